@@ -0,0 +1,58 @@
+package com.prismx.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// One synthetic file per shape and size. Every benchmark runs in throughput mode, where the
+// lineCounter gives lines/s next to ops/s, and in sample mode for the latency percentiles;
+// add -prof gc for the allocation rate.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public abstract class corpusBenchmark {
+    @Param({"DECLARATIONS", "ASSIGNMENTS", "ERRORS", "LONG_STRINGS", "EXPRESSIONS"})
+    public syntheticSource shape;
+
+    @Param({"1000", "100000", "10000000"})
+    public int lines;
+
+    protected File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = shape.file(lines);
+        load();
+    }
+
+    // Per-benchmark preparation, run after the file exists and before the first iteration.
+    protected void load() throws IOException {}
+
+    // Reported by JMH as a rate, i.e. lines/s in throughput mode.
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class lineCounter {
+        public long linesAnalyzed;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            linesAnalyzed = 0;
+        }
+    }
+}
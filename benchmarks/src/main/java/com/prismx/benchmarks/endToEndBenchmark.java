@@ -0,0 +1,35 @@
+package com.prismx.benchmarks;
+
+import com.prismx.model.lexicalAction;
+import com.prismx.model.pipelineAction;
+import com.prismx.model.semanticsAction;
+import com.prismx.model.sourceFile;
+import com.prismx.model.syntaxAction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+
+// Open, lex, parse and check the file: once as the three staged phases, once as the single pass.
+public class endToEndBenchmark extends corpusBenchmark {
+    @Benchmark
+    public void staged(lineCounter counter, Blackhole blackhole) throws IOException {
+        lexicalAction lexer = new lexicalAction(new sourceFile(file));
+        lexer.lexicalAnalysis();
+        syntaxAction syntax = new syntaxAction(lexer.getTokenStream());
+        syntax.analyzeSyntax();
+        semanticsAction semantics = new semanticsAction(lexer.getTokenStream());
+        semantics.analyzeSemantics();
+        blackhole.consume(syntax.getDiagnostics());
+        blackhole.consume(semantics.getDiagnostics());
+        counter.linesAnalyzed += lines;
+    }
+
+    @Benchmark
+    public pipelineAction singlePass(lineCounter counter) throws IOException {
+        pipelineAction pipeline = new pipelineAction(new sourceFile(file));
+        pipeline.analyze();
+        counter.linesAnalyzed += lines;
+        return pipeline;
+    }
+}
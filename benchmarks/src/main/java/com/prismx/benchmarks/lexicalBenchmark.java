@@ -0,0 +1,73 @@
+package com.prismx.benchmarks;
+
+import com.prismx.model.lexemePool;
+import com.prismx.model.lexicalAction;
+import com.prismx.model.sourceFile;
+import com.prismx.model.tokenStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+// lexemeSplit() and tokenizer() work one line at a time, so they run over a sample of at most
+// SAMPLE distinct lines, cycled until the file's line count is covered; keeping 10M lines as
+// Strings would measure the heap instead. lexicalAnalysis() streams the whole file.
+public class lexicalBenchmark extends corpusBenchmark {
+    static final int SAMPLE = 100_000;
+
+    private sourceFile source;
+    private String[] sample;
+    private String[][] sampleLexemes;
+
+    @Override
+    protected void load() throws IOException {
+        source = new sourceFile(file);
+        int count = Math.min(lines, SAMPLE);
+        sample = new String[count];
+        sampleLexemes = new String[count][];
+        for (int i = 0; i < count; i++) {
+            sample[i] = shape.line(i);
+            sampleLexemes[i] = lexicalAction.lexemeSplit(sample[i]).toArray(new String[0]);
+        }
+    }
+
+    @Benchmark
+    public void lexemeSplit(lineCounter counter, Blackhole blackhole) {
+        for (int i = 0; i < lines; i++) {
+            ArrayList<String> lexemes = lexicalAction.lexemeSplit(sample[i % sample.length]);
+            blackhole.consume(lexemes);
+        }
+        counter.linesAnalyzed += lines;
+    }
+
+    // Same split with every lexeme resolved through one pool for the whole run; compare
+    // gc.alloc.rate.norm with lexemeSplit.
+    @Benchmark
+    public void lexemeSplitPooled(lineCounter counter, Blackhole blackhole) {
+        lexemePool pool = new lexemePool();
+        for (int i = 0; i < lines; i++) {
+            ArrayList<String> lexemes = lexicalAction.lexemeSplit(sample[i % sample.length], pool);
+            blackhole.consume(lexemes);
+        }
+        counter.linesAnalyzed += lines;
+    }
+
+    @Benchmark
+    public void tokenizer(lineCounter counter, Blackhole blackhole) {
+        for (int i = 0; i < lines; i++) {
+            for (String lexeme : sampleLexemes[i % sampleLexemes.length]) {
+                blackhole.consume(lexicalAction.tokenizer(lexeme));
+            }
+        }
+        counter.linesAnalyzed += lines;
+    }
+
+    @Benchmark
+    public tokenStream lexicalAnalysis(lineCounter counter) throws IOException {
+        lexicalAction lexer = new lexicalAction(source);
+        lexer.lexicalAnalysis();
+        counter.linesAnalyzed += lines;
+        return lexer.getTokenStream();
+    }
+}
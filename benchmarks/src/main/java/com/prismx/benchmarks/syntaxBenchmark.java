@@ -0,0 +1,30 @@
+package com.prismx.benchmarks;
+
+import com.prismx.model.diagnosticSink;
+import com.prismx.model.lexicalAction;
+import com.prismx.model.sourceFile;
+import com.prismx.model.syntaxAction;
+import com.prismx.model.tokenStream;
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.io.IOException;
+
+// The file is lexed once per trial; only the syntax pass is measured.
+public class syntaxBenchmark extends corpusBenchmark {
+    private tokenStream tokens;
+
+    @Override
+    protected void load() throws IOException {
+        lexicalAction lexer = new lexicalAction(new sourceFile(file));
+        lexer.lexicalAnalysis();
+        tokens = lexer.getTokenStream();
+    }
+
+    @Benchmark
+    public diagnosticSink analyzeSyntax(lineCounter counter) {
+        syntaxAction syntax = new syntaxAction(tokens);
+        syntax.analyzeSyntax();
+        counter.linesAnalyzed += lines;
+        return syntax.getDiagnostics();
+    }
+}
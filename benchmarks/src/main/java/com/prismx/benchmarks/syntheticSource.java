@@ -0,0 +1,97 @@
+package com.prismx.benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+// Deterministic input for the benchmarks: line i of a shape is always the same text, so runs on
+// different machines and commits analyze identical files.
+public enum syntheticSource {
+    // every line declares a new variable, cycling through the data types
+    DECLARATIONS {
+        @Override
+        String line(int i) {
+            switch (i % 8) {
+                case 0: return "int v" + i + " = " + i + ";";
+                case 1: return "long v" + i + " = " + i + "L;";
+                case 2: return "double v" + i + " = " + i + ".5;";
+                case 3: return "float v" + i + " = 1.5f;";
+                case 4: return "boolean v" + i + " = true;";
+                case 5: return "char v" + i + " = 'c';";
+                case 6: return "short v" + i + " = " + (i % 30000) + ";";
+                default: return "String v" + i + " = \"value " + i + "\";";
+            }
+        }
+    },
+    // a fixed set of variables declared up front, then assigned over and over
+    ASSIGNMENTS {
+        @Override
+        String line(int i) {
+            if (i < VARIABLES) return "long v" + i + " = 0L;";
+            return "v" + (i % VARIABLES) + " = " + i + ";";
+        }
+    },
+    // every other line has a lexical, syntax or semantic problem
+    ERRORS {
+        @Override
+        String line(int i) {
+            switch (i % 10) {
+                case 1: return "int x" + i + "# = 1;";
+                case 3: return "int v" + i + " = 5";
+                case 5: return "undeclared" + i + " = 1;";
+                case 7: return "int v" + i + " = \"text\";";
+                case 9: return "byte v" + i + " = 300;";
+                default: return "int v" + i + " = " + i + ";";
+            }
+        }
+    },
+    // declarations whose value is a string literal of a few hundred characters
+    LONG_STRINGS {
+        @Override
+        String line(int i) {
+            return "String v" + i + " = \"" + LOREM + i + "\";";
+        }
+    },
+    // a fixed set of variables declared up front, then arithmetic over them and over constants
+    EXPRESSIONS {
+        @Override
+        String line(int i) {
+            if (i < VARIABLES) return "int v" + i + " = " + i + ";";
+            if (i % 2 == 0) return "int e" + i + " = v" + (i % VARIABLES) + " * 4 + (v" + (i * 7 % VARIABLES) + " - 1) / 3;";
+            return "v" + (i % VARIABLES) + " = -v" + (i * 3 % VARIABLES) + " % 7 + 2 * (3 + 4);";
+        }
+    };
+
+    static final int VARIABLES = 1000;
+    // long enough that scanning the literal dominates the line, short enough that 10M lines stay under
+    // the 2 GB a sourceFile can map
+    private static final String LOREM = "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor "
+            + "incididunt ut labore et dolore magna aliqua. ";
+
+    abstract String line(int i);
+
+    // Written once per shape and size under java.io.tmpdir and reused by later trials and runs;
+    // the 10M-line files take up to 1.5 GB.
+    File file(int lines) {
+        File file = new File(System.getProperty("java.io.tmpdir"), "prismx-" + name().toLowerCase() + "-" + lines + ".txt");
+        if (file.isFile()) return file;
+        try {
+            File partial = File.createTempFile("prismx-", ".part", file.getParentFile());
+            try (Writer out = new BufferedWriter(Files.newBufferedWriter(partial.toPath(), StandardCharsets.UTF_8), 1 << 16)) {
+                for (int i = 0; i < lines; i++) {
+                    out.write(line(i));
+                    out.write('\n');
+                }
+            }
+            Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return file;
+    }
+}
@@ -1,13 +1,32 @@
 package com.prismx.controller;
 
+import com.prismx.model.analysisCache;
+import com.prismx.model.analysisProgress;
+import com.prismx.model.analysisResult;
+import com.prismx.model.asyncTracer;
+import com.prismx.model.diagnosticSink;
 import com.prismx.model.lexicalAction;
+import com.prismx.model.lineMap;
+import com.prismx.model.phaseMetrics;
+import com.prismx.model.pipelineAction;
 import com.prismx.model.semanticsAction;
+import com.prismx.model.sourceFile;
+import com.prismx.model.sourceWatcher;
 import com.prismx.model.syntaxAction;
+import com.prismx.model.tokenStream;
+import com.prismx.model.tracer;
+import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.fxml.Initializable;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListView;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextArea;
+import javafx.scene.control.Tooltip;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.AnchorPane;
@@ -18,42 +37,74 @@ import javafx.stage.Stage;
 
 import java.io.*;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.ResourceBundle;
 
 public class Controller implements Initializable {
     private File selectedFile;
+    private sourceFile source;
 
-    @FXML private TextArea sourceCodeArea;
+    @FXML private ListView<Integer> sourceView;
     @FXML private TextArea resultArea;
+    @FXML private ListView<String> resultList;
     @FXML private Button btnOpenFile;
     @FXML private Button btnLexical;
     @FXML private Button btnSyntax;
     @FXML private Button btnSemantic;
     @FXML private Button btnClear;
+    @FXML private Button btnCancel;
+    @FXML private CheckBox chkSinglePass;
+    @FXML private CheckBox chkRecover;
+    @FXML private CheckBox chkWatch;
+    @FXML private ProgressBar progressBar;
+    @FXML private Label lblProgress;
     @FXML private Circle statusLoaded;
     @FXML private Circle statusLexical;
     @FXML private Circle statusSyntax;
     @FXML private Circle statusSemantic;
+    @FXML private Label lblLexicalTime;
+    @FXML private Label lblSyntaxTime;
+    @FXML private Label lblSemanticTime;
     @FXML private AnchorPane rootPane;
     @FXML private ImageView imgThemeIcon;
 
     private boolean isLightMode = false;
     private boolean lexicalIsSuccessful = false;
     private boolean syntaxIsSuccessful = false;
-
-    private HashMap<Integer, ArrayList<String>> processedLexical;
-    private HashMap<Integer, ArrayList<String>> processedTokens;
+    // taken from chkRecover when Lexical runs, so the later phases of that run agree with it
+    private boolean recovering = false;
+
+    private tokenStream processedTokens;
+    private diagnosticSink processedSyntax;
+    // set when the single pass or the result cache already has every phase's results; Syntax and
+    // Semantic then only show them, and storedNote says where they came from
+    private analysisResult stored;
+    private String storedNote;
+
+    private static final int LIST_THRESHOLD = 10_000;
+    // off unless the app is started with -Dprismx.trace=-|FILE
+    private static final tracer TRACE = asyncTracer.fromSystemProperties();
+    // files analyzed this session, by content: reopening one skips straight to its results
+    private static final analysisCache CACHE = new analysisCache(256L << 20);
+    private resultLog results = new resultLog();
+    private sourceLines sourceRows;
+    private Task<?> runningTask;
+    // bumped whenever a run or the whole view is abandoned, so late callbacks can tell they are stale
+    private int generation;
+    // follows the loaded file while Watch is ticked; watchRun tells its late callbacks apart in the same way
+    private sourceWatcher watcher;
+    private int watchRun;
 
     @Override
     public void initialize(URL url, ResourceBundle resourceBundle) {
         resetStatuses();
         disableAnalysisButtons();
         btnOpenFile.setDisable(false);
-        sourceCodeArea.setEditable(false);
+        btnCancel.setDisable(true);
+        sourceView.setCellFactory(view -> new sourceLineCell());
+        showSource(null);
         resultArea.setEditable(false);
+        clearResults();
     }
 
     @FXML
@@ -73,7 +124,7 @@ public class Controller implements Initializable {
 
     @FXML
     public void btnOpenFileAction(){
-        Stage stage = (Stage) sourceCodeArea.getScene().getWindow();
+        Stage stage = (Stage) sourceView.getScene().getWindow();
         FileChooser fileChooser = new FileChooser();
         fileChooser.setTitle("Open File");
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Java & Text Files", "*.txt", "*.java"));
@@ -83,25 +134,23 @@ public class Controller implements Initializable {
             resetStatuses();
             disableAnalysisButtons();
 
-            try (BufferedReader br = new BufferedReader(new FileReader(selectedFile))) {
-                StringBuilder content = new StringBuilder();
-                String line;
-                for(int i=1;(line=br.readLine())!=null;i++){
-                    content.append(i+"   "+line).append("\n");
-                }
+            try {
+                // only the line index is built here; sourceView decodes the rows it shows
+                source = new sourceFile(selectedFile);
 
-                if(content.toString().isEmpty()||content.toString().isBlank()){
-                    sourceCodeArea.setText("");
-                    resultArea.appendText("UnexpectedEmptyStringError: The text file does not contain string(s).");
+                if(source.lineCount() == 0){
+                    showSource(null);
+                    showResult("UnexpectedEmptyStringError: The text file does not contain string(s).");
                 }
                 else {
-                    sourceCodeArea.setText(content.toString());
-                    resultArea.clear();
+                    showSource(source);
+                    clearResults();
                     statusLoaded.setFill(Color.GREEN);
 
-                    resultArea.appendText("File \"" + selectedFile.getName() + "\" successfully loaded.\n");
+                    showResult("File \"" + selectedFile.getName() + "\" successfully loaded.\n");
                     btnLexical.setDisable(false);
                     btnOpenFile.setDisable(true);
+                    if (chkWatch.isSelected()) startWatching();
                 }
 
             } catch (IOException e) {
@@ -112,92 +161,501 @@ public class Controller implements Initializable {
     }
 
     @FXML
-    public void btnLexicalAction() throws IOException {
+    public void btnLexicalAction() {
         btnLexical.setDisable(true);
+        recovering = chkRecover.isSelected();
+        if (chkSinglePass.isSelected()) {
+            runPipeline();
+            return;
+        }
 
-        lexicalAction la = new lexicalAction(selectedFile);
-        la.lexicalAnalysis();
+        sourceFile file = source;
+        phaseTask task = new phaseTask("Lexical") {
+            @Override
+            protected resultLog.segment call() throws IOException {
+                if (restore(file, recovering)) return restoredLexical();
+                // built here, off the FX thread and only on a cache miss: it sizes the token arrays for the file
+                lexicalAction la = new lexicalAction(file);
+                la.setTracer(TRACE);
+                la.lexicalAnalysis(this);
+                metrics = la.getMetrics();
+                tokens = la.getTokenStream();
+                passed = la.lexicalSuccessStatus();
+                if (!passed) {
+                    errorLines = lexicalErrorLines(tokens);
+                    return resultLog.segment("\n>>> ERROR: Lexical Analysis attempt failed. Found invalid token(s)\n" + la.getErrors());
+                }
+                return resultLog.segment("\n>>> Lexical Analysis attempt successful.\n" + la.getContent());
+            }
+        };
+        runPhase(task, statusLexical, lblLexicalTime, btnLexical, () -> {
+            if (task.cached != null) {
+                showStored(task, "restored from cache");
+                return;
+            }
+            if(!task.passed && recovering){
+                // the syntax and semantic phases skip the statements with invalid tokens
+                statusLexical.setFill(Color.RED);
+                lexicalIsSuccessful = false;
+                processedTokens = task.tokens;
+                btnSyntax.setDisable(false);
+            }
+            else if(!task.passed){
+                statusLexical.setFill(Color.RED);
+                lexicalIsSuccessful = false;
+                btnSyntax.setDisable(true);
+                btnSemantic.setDisable(true);
+            }
+            else {
+                lexicalIsSuccessful = true;
+                processedTokens = task.tokens;
+                statusLexical.setFill(Color.GREEN);
+                btnSyntax.setDisable(false);
+            }
+        });
+    }
 
-        if(!la.lexicalSuccessStatus()){
-            statusLexical.setFill(Color.RED);
-            resultArea.appendText("\n>>> ERROR: Lexical Analysis attempt failed. Found invalid token(s)\n");
-            resultArea.appendText(la.getErrors());
-            lexicalIsSuccessful = false;
-            btnSyntax.setDisable(true);
-            btnSemantic.setDisable(true);
+    @FXML
+    public void btnSyntaxAction(){
+        btnSyntax.setDisable(true);
+        if (stored != null) {
+            lineMap<String> errors = stored.getSyntaxErrors();
+            showSyntaxResult(errors.isEmpty(), errors.isEmpty()
+                    ? "\n>>> Syntax Analysis successful. No errors found.\n" + storedSummary()
+                    : syntaxFailure(errors));
+            return;
         }
-        else {
-            lexicalIsSuccessful = true;
-            processedLexical = la.getLexicalDict();
-            processedTokens = la.getTokenDict();
-            statusLexical.setFill(Color.GREEN);
-            resultArea.appendText("\n>>> Lexical Analysis attempt successful.\n");
-            resultArea.appendText(la.getContent());
-            btnSyntax.setDisable(false);
+
+        syntaxAction syn = new syntaxAction(processedTokens);
+        syn.setTracer(TRACE);
+        syn.setRecovering(recovering);
+        phaseTask task = new phaseTask("Syntax") {
+            @Override
+            protected resultLog.segment call() {
+                syn.analyzeSyntax(this);
+                metrics = syn.getMetrics();
+                lineMap<String> errors = syn.getErrors();
+                passed = errors.isEmpty();
+                errorLines = errors;
+                if (passed) {
+                    return resultLog.segment("\n>>> Syntax Analysis successful. No errors found.\n" + syn.getContent());
+                }
+                return resultLog.segment(syntaxFailure(errors));
+            }
+        };
+        runPhase(task, statusSyntax, lblSyntaxTime, btnSyntax, () -> {
+            processedSyntax = syn.getDiagnostics();
+            setSyntaxStatus(task.passed);
+        });
+    }
+
+    private static String syntaxFailure(lineMap<String> errors) {
+        StringBuilder report = new StringBuilder("\n>>> Syntax Analysis Failed! Found " + errors.size() + " error(s):\n");
+        for (int i = 0; i < errors.size(); i++) {
+            report.append("Line " + errors.lineAt(i) + ": " + errors.valueAt(i) + "\n");
         }
+        return report.toString();
+    }
+
+    private void setSyntaxStatus(boolean passed) {
+        syntaxIsSuccessful = passed;
+        statusSyntax.setFill(passed ? Color.GREEN : Color.RED);
+        btnSemantic.setDisable(!passed && !recovering);
+    }
+
+    private void showSyntaxResult(boolean passed, String report) {
+        setSyntaxStatus(passed);
+        sourceRows.mark(stored.getSyntaxErrors());
+        sourceView.refresh();
+        showResult(report);
     }
 
     @FXML
-    public void btnSyntaxAction(){
-        btnSyntax.setDisable(true);
+    public void btnSemanticAction(){
+        btnSemantic.setDisable(true);
+        if (stored != null) {
+            lineMap<String> errors = stored.getSemanticErrors();
+            statusSemantic.setFill(errors.isEmpty() ? Color.GREEN : Color.RED);
+            sourceRows.mark(errors);
+            sourceView.refresh();
+            showResult(semanticReport(errors) + storedSummary());
+            return;
+        }
+
+        semanticsAction sem = new semanticsAction(processedTokens);
+        sem.setTracer(TRACE);
+        sem.setRecovering(recovering);
+        tokenStream tokens = processedTokens;
+        diagnosticSink syntaxDiagnostics = processedSyntax;
+        sourceFile file = source;
+        phaseTask task = new phaseTask("Semantic") {
+            @Override
+            protected resultLog.segment call() {
+                sem.analyzeSemantics(this);
+                metrics = sem.getMetrics();
+                CACHE.put(file, recovering, analysisResult.of(tokens, syntaxDiagnostics, sem.getDiagnostics()));
+                lineMap<String> errors = sem.getErrors();
+                passed = errors.isEmpty();
+                errorLines = errors;
+
+                StringBuilder report = new StringBuilder();
+                if (!passed) {
+                    report.append("\n>>> Semantic Analysis Failed.\n");
+                } else {
+                    report.append("\n>>> Semantic Analysis Passed. Code is logically correct.\n");
+                }
+
+                for (int line = 0; line < tokens.lineCount(); line++) {
+                    int lineNumber = tokens.lineNumber(line);
+                    if (tokens.lineSize(line) == 0) continue;
 
-        syntaxAction syn = new syntaxAction(processedTokens, processedLexical);
-        syn.analyzeSyntax();
-        HashMap<Integer, String> errors = syn.getErrors();
+                    if (errors.containsLine(lineNumber)) {
+                        report.append("Line " + lineNumber + " Error: " + errors.get(lineNumber) + " \n");
+                    } else {
+                        report.append("Line " + lineNumber + ": Semantics Correct \n");
+                    }
+                }
+                return resultLog.segment(report.toString());
+            }
+        };
+        runPhase(task, statusSemantic, lblSemanticTime, btnSemantic, () -> statusSemantic.setFill(task.passed ? Color.GREEN : Color.RED));
+    }
 
-        if(errors.isEmpty()){
-            statusSyntax.setFill(Color.GREEN);
-            syntaxIsSuccessful = true;
-            resultArea.appendText("\n>>> Syntax Analysis successful. No errors found.\n");
-            resultArea.appendText(syn.getContent());
-            btnSemantic.setDisable(false);
+    private static String semanticReport(lineMap<String> errors) {
+        StringBuilder report = new StringBuilder(errors.isEmpty()
+                ? "\n>>> Semantic Analysis Passed. Code is logically correct.\n"
+                : "\n>>> Semantic Analysis Failed.\n");
+        for (int i = 0; i < errors.size(); i++) {
+            report.append("Line " + errors.lineAt(i) + " Error: " + errors.valueAt(i) + " \n");
         }
-        else{
-            statusSyntax.setFill(Color.RED);
-            syntaxIsSuccessful = false;
-            resultArea.appendText("\n>>> Syntax Analysis Failed! Found " + errors.size() + " error(s):\n");
+        return report.toString();
+    }
 
-            for (Map.Entry<Integer, String> entry : errors.entrySet()) {
-                resultArea.appendText("Line " + entry.getKey() + ": " + entry.getValue() + "\n");
+    // Lexes, parses and checks every line in one pass; the Syntax and Semantic buttons then show the
+    // results it kept instead of running their own pass. Only error lines are kept, so the
+    // per-line listings of the staged phases become a one-line summary.
+    private void runPipeline() {
+        sourceFile file = source;
+        pipelineAction pa = new pipelineAction(file);
+        pa.setTracer(TRACE);
+        pa.setRecovering(recovering);
+        phaseTask task = new phaseTask("Single-pass") {
+            @Override
+            protected resultLog.segment call() throws IOException {
+                if (restore(file, recovering)) return restoredLexical();
+                pa.analyze(this);
+                metrics = pa.getMetrics();
+                passed = pa.lexicalSuccessStatus();
+                if (!passed) {
+                    errorLines = pa.getLexicalErrorLines();
+                    return resultLog.segment("\n>>> ERROR: Lexical Analysis attempt failed. Found invalid token(s)\n" + pa.getErrors());
+                }
+                return resultLog.segment("\n>>> Lexical Analysis attempt successful.\n"
+                        + pa.lineCount() + " line(s), " + pa.tokenCount() + " token(s) analyzed in a single pass.\n");
+            }
+        };
+        runPhase(task, statusLexical, lblLexicalTime, btnLexical, () -> {
+            if (task.cached != null) {
+                showStored(task, "restored from cache");
+                return;
             }
+            task.cached = pa.getResult();
+            showStored(task, "checked in a single pass");
+        });
+    }
 
-            btnSemantic.setDisable(true);
+    // Enters the mode where Syntax and Semantic show task.cached instead of running.
+    private void showStored(phaseTask task, String note) {
+        lexicalIsSuccessful = task.passed;
+        statusLexical.setFill(task.passed ? Color.GREEN : Color.RED);
+        btnSyntax.setDisable(!task.passed && !recovering);
+        btnSemantic.setDisable(true);
+        if (task.passed || recovering) {
+            stored = task.cached;
+            storedNote = note;
         }
     }
 
+    private String storedSummary() {
+        return stored.lineCount() + " line(s) " + storedNote + ".\n";
+    }
+
+    // A phase run off the FX thread that hands back its whole output as one result segment. The
+    // model reports lines processed and polls isCancelled() through analysisProgress; Task
+    // coalesces the updates into at most one per pulse.
+    private abstract static class phaseTask extends Task<resultLog.segment> implements analysisProgress {
+        private final String phase;
+        // written by call() before the task succeeds, read on the FX thread afterwards
+        protected boolean passed;
+        protected lineMap<String> errorLines;
+        protected phaseMetrics metrics;
+        // the lexical phase's tokens, when it ran
+        protected tokenStream tokens;
+        // every phase's results, when the cache already had this file's content
+        protected analysisResult cached;
+
+        phaseTask(String phase) {
+            this.phase = phase;
+        }
+
+        // Hashes the file here, off the FX thread, and looks it up in the cache.
+        protected boolean restore(sourceFile file, boolean recovering) {
+            cached = CACHE.get(file, recovering);
+            return cached != null;
+        }
+
+        protected resultLog.segment restoredLexical() {
+            passed = cached.lexicalSuccessStatus();
+            if (!passed) {
+                errorLines = cached.getLexicalErrorLines();
+                return resultLog.segment("\n>>> ERROR: Lexical Analysis attempt failed. Found invalid token(s)\n" + cached.getErrors());
+            }
+            return resultLog.segment("\n>>> Lexical Analysis attempt successful.\n"
+                    + cached.lineCount() + " line(s), " + cached.tokenCount() + " token(s) restored from cache.\n");
+        }
+
+        @Override
+        public void linesDone(long done, long total) {
+            updateProgress(done, total);
+            updateMessage(phase + ": " + done + " / " + total + " lines");
+        }
+    }
+
+    private void runPhase(phaseTask task, Circle status, Label timing, Button button, Runnable onSucceeded) {
+        int run = ++generation;
+        status.setFill(Color.ORANGE);
+        btnCancel.setDisable(false);
+        progressBar.progressProperty().bind(task.progressProperty());
+        lblProgress.textProperty().bind(task.messageProperty());
+
+        task.setOnSucceeded(e -> {
+            if (run != generation) return;
+            endPhase();
+            onSucceeded.run();
+            if (task.metrics != null) showTiming(timing, task.metrics);
+            if (task.errorLines != null) {
+                sourceRows.mark(task.errorLines);
+                sourceView.refresh();
+            }
+            showResult(task.getValue());
+        });
+        task.setOnCancelled(e -> {
+            if (run != generation) return;
+            endPhase();
+            status.setFill(Color.GREY);
+            button.setDisable(false);
+            showResult("\n>>> " + task.phase + " Analysis cancelled.\n");
+        });
+        task.setOnFailed(e -> {
+            if (run != generation) return;
+            endPhase();
+            status.setFill(Color.RED);
+            button.setDisable(false);
+            showErrorAlert(task.phase + " Analysis Error", String.valueOf(task.getException().getMessage()));
+        });
+
+        runningTask = task;
+        Thread worker = new Thread(task, "prism-" + task.phase.toLowerCase());
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // Wall time next to the status light; the tooltip has CPU time, allocation and counts.
+    private static void showTiming(Label timing, phaseMetrics metrics) {
+        timing.setText(metrics.summary());
+        timing.setTooltip(new Tooltip(metrics.details()));
+    }
+
+    private void endPhase() {
+        runningTask = null;
+        btnCancel.setDisable(true);
+        progressBar.progressProperty().unbind();
+        lblProgress.textProperty().unbind();
+        progressBar.setProgress(0);
+        lblProgress.setText("");
+    }
+
     @FXML
-    public void btnSemanticAction(){
-        btnSemantic.setDisable(true);
-        semanticsAction sem = new semanticsAction(processedTokens, processedLexical);
-        sem.analyzeSemantics();
-        HashMap<Integer, String> errors = sem.getErrors();
+    public void chkWatchAction() {
+        if (chkWatch.isSelected()) {
+            if (source != null) startWatching();
+            return;
+        }
+        stopWatching();
+        // back to running the phases by hand, from the start
+        if (source != null && runningTask == null) {
+            stored = null;
+            btnLexical.setDisable(false);
+        }
+    }
 
-        boolean hasErrors = !errors.isEmpty();
+    // Analyzes the loaded file now and again on every save, on the watcher's threads; the phase
+    // buttons stay off meanwhile. Recover is taken from its box when watching starts.
+    private void startWatching() {
+        stopWatching();
+        int run = ++watchRun;
+        boolean recover = chkRecover.isSelected();
+        try {
+            watcher = new sourceWatcher(List.of(source.getFile().toPath()), TRACE, recover, 1,
+                    sourceWatcher.DEFAULT_DEBOUNCE_MILLIS, new sourceWatcher.listener() {
+                @Override
+                public void analyzed(sourceFile file, analysisResult result, long nanos) {
+                    Platform.runLater(() -> {
+                        if (run == watchRun) showWatched(file, result, recover, nanos);
+                    });
+                }
 
-        if (hasErrors) {
-            statusSemantic.setFill(Color.RED);
-            resultArea.appendText("\n>>> Semantic Analysis Failed.\n");
-        } else {
-            statusSemantic.setFill(Color.GREEN);
-            resultArea.appendText("\n>>> Semantic Analysis Passed. Code is logically correct.\n");
+                @Override
+                public void removed(File file) {
+                    Platform.runLater(() -> {
+                        if (run != watchRun) return;
+                        statusLoaded.setFill(Color.RED);
+                        showResult("\n>>> File \"" + file.getName() + "\" was deleted. Waiting for it to be written again.\n");
+                    });
+                }
+
+                @Override
+                public void failed(File file, Exception e) {
+                    Platform.runLater(() -> {
+                        if (run == watchRun) showResult("\n>>> Could not analyze \"" + file.getName() + "\": " + e.getMessage() + "\n");
+                    });
+                }
+            });
+        } catch (IOException e) {
+            chkWatch.setSelected(false);
+            showErrorAlert("Watch Error", "Could not watch file: " + e.getMessage());
+            return;
+        }
+        disableAnalysisButtons();
+        watcher.start();
+    }
+
+    private void stopWatching() {
+        if (watcher == null) return;
+        watchRun++;
+        try {
+            watcher.close();
+        } catch (IOException e) {
+            // nothing left to release
+        }
+        watcher = null;
+    }
+
+    // Replaces the view with the watcher's latest results, all phases at once. The phases a manual
+    // run would not have reached (after a failure, unless recovering) stay grey.
+    private void showWatched(sourceFile file, analysisResult result, boolean recover, long nanos) {
+        generation++;
+        if (runningTask != null) {
+            runningTask.cancel();
+            endPhase();
+        }
+        // the old mapping may no longer match the file on disk
+        source = file;
+        recovering = recover;
+        stored = result;
+        storedNote = "re-analyzed after a change";
+        showSource(file);
+        clearResults();
+        resetStatuses();
+        statusLoaded.setFill(Color.GREEN);
+
+        StringBuilder report = new StringBuilder("File \"" + file.getFile().getName() + "\" analyzed in "
+                + nanos / 1_000_000 + " ms. Watching for changes.\n");
+        lexicalIsSuccessful = result.lexicalSuccessStatus();
+        statusLexical.setFill(lexicalIsSuccessful ? Color.GREEN : Color.RED);
+        sourceRows.mark(result.getLexicalErrorLines());
+        if (!lexicalIsSuccessful) {
+            report.append("\n>>> ERROR: Lexical Analysis attempt failed. Found invalid token(s)\n" + result.getErrors());
+        }
+        if (lexicalIsSuccessful || recover) {
+            lineMap<String> errors = result.getSyntaxErrors();
+            syntaxIsSuccessful = errors.isEmpty();
+            statusSyntax.setFill(syntaxIsSuccessful ? Color.GREEN : Color.RED);
+            sourceRows.mark(errors);
+            report.append(syntaxIsSuccessful ? "\n>>> Syntax Analysis successful. No errors found.\n" : syntaxFailure(errors));
+        }
+        if ((lexicalIsSuccessful && syntaxIsSuccessful) || recover) {
+            lineMap<String> errors = result.getSemanticErrors();
+            statusSemantic.setFill(errors.isEmpty() ? Color.GREEN : Color.RED);
+            sourceRows.mark(errors);
+            report.append(semanticReport(errors));
+        }
+        report.append(storedSummary());
+        sourceView.refresh();
+        showResult(report.toString());
+    }
+
+    @FXML
+    public void btnCancelAction() {
+        if (runningTask != null) {
+            runningTask.cancel();
         }
+    }
 
-        for (Map.Entry<Integer, ArrayList<String>> entry : processedTokens.entrySet()) {
-            int lineNumber = entry.getKey();
-            if (entry.getValue().isEmpty()) continue;
+    private void showSource(sourceFile file) {
+        sourceRows = new sourceLines(file);
+        sourceView.setItems(sourceRows);
+    }
 
-            if (errors.containsKey(lineNumber)) {
-                resultArea.appendText("Line " + lineNumber + " Error: " + errors.get(lineNumber) + " \n");
-            } else {
-                resultArea.appendText("Line " + lineNumber + ": Semantics Correct \n");
+    private static lineMap<String> lexicalErrorLines(tokenStream tokens) {
+        lineMap<String> errors = new lineMap<>();
+        for (int line = 0; line < tokens.lineCount(); line++) {
+            for (int t = tokens.firstToken(line); t < tokens.endToken(line); t++) {
+                if (tokens.kind(t) == tokenStream.ERROR) {
+                    errors.put(tokens.lineNumber(line), "Invalid symbol '" + tokens.lexeme(t) + "'");
+                    break;
+                }
             }
         }
+        return errors;
+    }
+
+    private void showResult(String text) {
+        showResult(resultLog.segment(text));
+    }
+
+    // Small outputs go into resultArea with a single appendText per phase. Once the log passes
+    // LIST_THRESHOLD rows the panel switches to resultList, a ListView over the log that only
+    // renders the visible rows, so showing a result costs the same however long the file is.
+    private void showResult(resultLog.segment segment) {
+        int first = results.append(segment);
+        if (resultList.isVisible()) {
+            resultList.scrollTo(first);
+        } else if (results.size() > LIST_THRESHOLD) {
+            resultArea.setVisible(false);
+            resultArea.setManaged(false);
+            resultArea.clear();
+            resultList.setVisible(true);
+            resultList.setManaged(true);
+            resultList.scrollTo(first);
+        } else {
+            resultArea.appendText(segment.text);
+        }
+    }
+
+    private void clearResults() {
+        results = new resultLog();
+        resultList.setItems(results);
+        resultList.setVisible(false);
+        resultList.setManaged(false);
+        resultArea.clear();
+        resultArea.setVisible(true);
+        resultArea.setManaged(true);
     }
 
     @FXML
     public void btnClearAction() {
-        sourceCodeArea.clear();
-        resultArea.clear();
+        stopWatching();
+        generation++;
+        if (runningTask != null) {
+            runningTask.cancel();
+            endPhase();
+        }
+        source = null;
+        stored = null;
+        processedSyntax = null;
+        showSource(null);
+        clearResults();
         resetStatuses();
         disableAnalysisButtons();
         btnOpenFile.setDisable(false);
@@ -221,6 +679,10 @@ public class Controller implements Initializable {
         statusLexical.setFill(Color.GREY);
         statusSyntax.setFill(Color.GREY);
         statusSemantic.setFill(Color.GREY);
+        for (Label timing : new Label[] {lblLexicalTime, lblSyntaxTime, lblSemanticTime}) {
+            timing.setText("");
+            timing.setTooltip(null);
+        }
 
         lexicalIsSuccessful = false;
         syntaxIsSuccessful = false;
@@ -0,0 +1,82 @@
+package com.prismx.controller;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+
+// Everything shown in the result panel, one row per output line. Each phase hands over its whole
+// output as one segment: the text plus the offsets of its lines, indexed off the FX thread. Rows
+// are cut out of the text only when asked for, so a ListView over the log formats just the rows
+// on screen and the log costs one int per line on top of the text itself.
+class resultLog extends ObservableListBase<String> {
+    static final class segment {
+        final String text;
+        // lineStarts[i] is where row i begins; lineStarts[rows] is one past the last row's '\n'
+        private final int[] lineStarts;
+        private final int rows;
+
+        private segment(String text) {
+            this.text = text;
+            int[] starts = new int[16];
+            int count = 0;
+            int start = 0;
+            while (start < text.length()) {
+                if (count + 1 >= starts.length) starts = Arrays.copyOf(starts, starts.length * 2);
+                starts[count++] = start;
+                int end = text.indexOf('\n', start);
+                start = end < 0 ? text.length() + 1 : end + 1;
+            }
+            starts[count] = start;
+            this.lineStarts = starts;
+            this.rows = count;
+        }
+
+        int rows() {
+            return rows;
+        }
+
+        String row(int index) {
+            int end = Math.min(lineStarts[index + 1] - 1, text.length());
+            return text.substring(lineStarts[index], end);
+        }
+    }
+
+    static segment segment(String text) {
+        return new segment(text);
+    }
+
+    private final ArrayList<segment> segments = new ArrayList<>();
+    // firstRows[i] is the log row where segment i begins
+    private int[] firstRows = new int[8];
+    private int size;
+
+    // Returns the row the segment starts at.
+    int append(segment segment) {
+        int first = size;
+        if (segment.rows() == 0) return first;
+        if (segments.size() == firstRows.length) firstRows = Arrays.copyOf(firstRows, firstRows.length * 2);
+        firstRows[segments.size()] = first;
+        segments.add(segment);
+        size += segment.rows();
+
+        beginChange();
+        nextAdd(first, size);
+        endChange();
+        return first;
+    }
+
+    @Override
+    public String get(int index) {
+        Objects.checkIndex(index, size);
+        int s = Arrays.binarySearch(firstRows, 0, segments.size(), index);
+        if (s < 0) s = -s - 2;
+        return segments.get(s).row(index - firstRows[s]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+}
@@ -0,0 +1,39 @@
+package com.prismx.controller;
+
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.Tooltip;
+
+// One visible row of the source viewer: the line number in the gutter, then the line text.
+class sourceLineCell extends ListCell<Integer> {
+    private final Label gutter = new Label();
+
+    sourceLineCell() {
+        gutter.getStyleClass().add("gutter");
+    }
+
+    @Override
+    protected void updateItem(Integer lineNumber, boolean empty) {
+        super.updateItem(lineNumber, empty);
+        getStyleClass().remove("error-line");
+        if (empty || lineNumber == null) {
+            setText(null);
+            setGraphic(null);
+            setTooltip(null);
+            return;
+        }
+
+        sourceLines lines = (sourceLines) getListView().getItems();
+        gutter.setText(lines.gutter(lineNumber));
+        setGraphic(gutter);
+        setText(lines.text(lineNumber));
+
+        String error = lines.marker(lineNumber);
+        if (error != null) {
+            getStyleClass().add("error-line");
+            setTooltip(new Tooltip(error));
+        } else {
+            setTooltip(null);
+        }
+    }
+}
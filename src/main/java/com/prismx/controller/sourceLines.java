@@ -0,0 +1,72 @@
+package com.prismx.controller;
+
+import com.prismx.model.lineMap;
+import com.prismx.model.sourceFile;
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Objects;
+
+// Items of the source viewer: row i is line i + 1 of the mapped file. Nothing is decoded up front;
+// sourceLineCell asks for a line's text only while that row is on screen. Error lines reported by
+// the phases are kept as their lineMaps and found by binary search. In watch mode an editor can
+// truncate the file under the mapping before the watcher's next result replaces these items; from
+// the first read that hits the cut-off part on, every row shows a placeholder instead of its text.
+class sourceLines extends ObservableListBase<Integer> {
+    private static final int MAX_LINE_BYTES = 4096;
+    private static final String CHANGED_ON_DISK = "(file changed on disk)";
+
+    private final sourceFile source;
+    private final ArrayList<lineMap<String>> markers = new ArrayList<>();
+    private final int gutterDigits;
+    // only read and set on the FX thread
+    private boolean changedOnDisk;
+
+    sourceLines(sourceFile source) {
+        this.source = source;
+        this.gutterDigits = Integer.toString(Math.max(1, size())).length();
+    }
+
+    @Override
+    public Integer get(int index) {
+        return Objects.checkIndex(index, size()) + 1;
+    }
+
+    @Override
+    public int size() {
+        return source == null ? 0 : source.lineCount();
+    }
+
+    String text(int lineNumber) {
+        if (changedOnDisk) return CHANGED_ON_DISK;
+        try {
+            if (source.lineEnd(lineNumber) - source.lineStart(lineNumber) > MAX_LINE_BYTES) {
+                return source.line(lineNumber, MAX_LINE_BYTES) + " ...";
+            }
+            return source.line(lineNumber);
+        } catch (InternalError e) {
+            // the pages past the new end of the file are gone (SIGBUS); showWatched() brings the new mapping
+            changedOnDisk = true;
+            return CHANGED_ON_DISK;
+        }
+    }
+
+    // Right-aligned so every gutter in the monospace view has the same width.
+    String gutter(int lineNumber) {
+        String number = Integer.toString(lineNumber);
+        return " ".repeat(gutterDigits - number.length()) + number;
+    }
+
+    void mark(lineMap<String> errors) {
+        if (!errors.isEmpty()) markers.add(errors);
+    }
+
+    // The first reported error on the line, or null.
+    String marker(int lineNumber) {
+        for (lineMap<String> errors : markers) {
+            String error = errors.get(lineNumber);
+            if (error != null) return error;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,140 @@
+package com.prismx.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Results of the three phases keyed by the file's content (sourceFile.contentHash() and size)
+// and whether they ran in recovering mode, so an unchanged file is never analyzed twice. Entries are kept encoded (resultFormat): an LRU
+// map in memory bounded by maxMemoryBytes and, when a directory is given, one file per entry
+// there that later runs pick up. Safe to share between threads.
+public class analysisCache {
+    // Bump whenever a phase reports anything differently; older entries then stop matching.
+    public static final int ANALYZER_VERSION = 3;
+
+    private record key(long hash, long size, boolean recovering) {}
+
+    private final long maxMemoryBytes;
+    private final File directory;
+    private final LinkedHashMap<key, byte[]> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // memory only
+    public analysisCache(long maxMemoryBytes) {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = null;
+    }
+
+    public analysisCache(long maxMemoryBytes, File directory) throws IOException {
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.directory = directory;
+        if (directory != null) Files.createDirectories(directory.toPath());
+    }
+
+    // The cached result, or runs the phases and caches theirs.
+    public analysisResult analyze(sourceFile source, tracer trace, boolean recovering) throws IOException {
+        analysisResult cached = get(source, recovering);
+        if (cached != null) return cached;
+        analysisResult result = analysisResult.analyze(source, trace, recovering);
+        put(source, recovering, result);
+        return result;
+    }
+
+    public analysisResult get(sourceFile source, boolean recovering) {
+        key key = new key(source.contentHash(), source.byteSize(), recovering);
+        byte[] data;
+        synchronized (memory) {
+            data = memory.get(key);
+        }
+        analysisResult result = null;
+        if (data != null) {
+            result = resultFormat.decode(ByteBuffer.wrap(data), key.hash, key.size, true);
+        } else if (directory != null) {
+            result = readDisk(key);
+        }
+        (result == null ? misses : hits).incrementAndGet();
+        return result;
+    }
+
+    // result must have its tokens; the single pass drops them, so its results are not cached.
+    public void put(sourceFile source, boolean recovering, analysisResult result) {
+        if (result.getTokens() == null) return;
+        key key = new key(source.contentHash(), source.byteSize(), recovering);
+        byte[] data = resultFormat.encode(result, key.hash, key.size);
+        remember(key, data);
+        if (directory != null) writeDisk(key, data);
+    }
+
+    private void remember(key key, byte[] data) {
+        if (data.length > maxMemoryBytes) return;
+        synchronized (memory) {
+            byte[] old = memory.put(key, data);
+            if (old != null) memoryBytes -= old.length;
+            memoryBytes += data.length;
+            Iterator<Map.Entry<key, byte[]>> eldest = memory.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && eldest.hasNext()) {
+                memoryBytes -= eldest.next().getValue().length;
+                eldest.remove();
+            }
+        }
+    }
+
+    private Path diskPath(key key) {
+        return new File(directory, String.format("%016x-%x-v%d.%d%s.prc", key.hash, key.size, ANALYZER_VERSION, resultFormat.VERSION, key.recovering ? "-r" : "")).toPath();
+    }
+
+    // Decoded straight from the mapped file; the bytes are copied only to keep them in memory.
+    private analysisResult readDisk(key key) {
+        ByteBuffer mapped;
+        try {
+            mapped = resultFormat.map(diskPath(key));
+        } catch (IOException e) {
+            return null;
+        }
+        analysisResult result = resultFormat.decode(mapped.duplicate(), key.hash, key.size, true);
+        if (result != null && mapped.capacity() <= maxMemoryBytes) {
+            byte[] data = new byte[mapped.capacity()];
+            mapped.get(0, data);
+            remember(key, data);
+        }
+        return result;
+    }
+
+    // Written to a temporary file and moved into place, so a reader never sees half an entry.
+    private void writeDisk(key key, byte[] data) {
+        Path target = diskPath(key);
+        try {
+            Path partial = Files.createTempFile(directory.toPath(), "entry-", ".part");
+            try {
+                Files.write(partial, data);
+                try {
+                    Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(partial);
+            }
+        } catch (IOException e) {
+            // the disk tier is best effort; the result is still in memory
+        }
+    }
+
+    public long hits() {
+        return hits.get();
+    }
+
+    public long misses() {
+        return misses.get();
+    }
+}
@@ -0,0 +1,28 @@
+package com.prismx.model;
+
+import java.util.concurrent.CancellationException;
+
+// Progress and cancellation for a running phase. The phases call checkpoint() every INTERVAL
+// lines, so a listener costs nothing per line and a cancelled run stops within one interval.
+public interface analysisProgress {
+    int INTERVAL = 4096;
+
+    analysisProgress NONE = new analysisProgress() {
+        @Override
+        public void linesDone(long done, long total) {}
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    void linesDone(long done, long total);
+
+    boolean isCancelled();
+
+    default void checkpoint(long done, long total) {
+        if (isCancelled()) throw new CancellationException();
+        linesDone(done, total);
+    }
+}
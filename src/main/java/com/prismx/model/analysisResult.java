@@ -0,0 +1,130 @@
+package com.prismx.model;
+
+import java.io.IOException;
+
+// What the three phases found in one file: its tokens, the syntax and semantic diagnostics and
+// the lines with invalid tokens. Comes from the staged phases, the single pass or the result
+// cache and reads the same either way; the single pass keeps no tokens, so getTokens() is null there.
+public class analysisResult {
+    private final tokenStream tokens;
+    // error lines only: the kinds on the line as getErrors() lists them, and the first bad lexeme
+    private final lineMap<String> lexicalErrors;
+    private final lineMap<String> lexicalErrorLines;
+    private final int lineCount;
+    private final long tokenCount;
+    private final diagnosticSink syntaxDiagnostics;
+    private final diagnosticSink semanticDiagnostics;
+
+    analysisResult(tokenStream tokens, lineMap<String> lexicalErrors, lineMap<String> lexicalErrorLines,
+                   int lineCount, long tokenCount, diagnosticSink syntaxDiagnostics, diagnosticSink semanticDiagnostics) {
+        this.tokens = tokens;
+        this.lexicalErrors = lexicalErrors;
+        this.lexicalErrorLines = lexicalErrorLines;
+        this.lineCount = lineCount;
+        this.tokenCount = tokenCount;
+        this.syntaxDiagnostics = syntaxDiagnostics;
+        this.semanticDiagnostics = semanticDiagnostics;
+    }
+
+    public static analysisResult of(tokenStream tokens, diagnosticSink syntaxDiagnostics, diagnosticSink semanticDiagnostics) {
+        lineMap<String> lexicalErrors = new lineMap<>();
+        lineMap<String> lexicalErrorLines = new lineMap<>();
+        for (int line = 0; line < tokens.lineCount(); line++) {
+            if (!tokens.lineHasKind(line, tokenStream.ERROR)) continue;
+            lexicalErrors.put(tokens.lineNumber(line), lexicalAction.kindList(tokens, line));
+            lexicalErrorLines.put(tokens.lineNumber(line), lexicalAction.invalidSymbol(tokens, line));
+        }
+        return new analysisResult(tokens, lexicalErrors, lexicalErrorLines, tokens.lineCount(), tokens.tokenCount(),
+                syntaxDiagnostics, semanticDiagnostics);
+    }
+
+    // Lexical, syntax and semantic phases one after another, like the batch analyzer runs them. As
+    // in the UI, unless recovering, a phase runs only when the one before it found no errors; the
+    // phases it skips report nothing.
+    public static analysisResult analyze(sourceFile source, tracer trace) throws IOException {
+        return analyze(source, trace, false);
+    }
+
+    // recovering: see syntaxAction.setRecovering()
+    public static analysisResult analyze(sourceFile source, tracer trace, boolean recovering) throws IOException {
+        return analyze(source, trace, recovering, null, 0);
+    }
+
+    // project, when not null, already holds the declarations of every file; this is its file number file.
+    public static analysisResult analyze(sourceFile source, tracer trace, boolean recovering, projectSymbols project, int file)
+            throws IOException {
+        return analyze(source, trace, recovering, project, file, analysisProgress.NONE);
+    }
+
+    // Throws CancellationException once progress reports the run as cancelled.
+    public static analysisResult analyze(sourceFile source, tracer trace, boolean recovering, projectSymbols project, int file,
+                                         analysisProgress progress) throws IOException {
+        lexicalAction lexer = new lexicalAction(source);
+        lexer.setTracer(trace);
+        lexer.lexicalAnalysis(progress);
+        tokenStream tokens = lexer.getTokenStream();
+        if (!recovering && !lexer.lexicalSuccessStatus()) return of(tokens, new diagnosticSink(), new diagnosticSink());
+        syntaxAction syntax = new syntaxAction(tokens);
+        syntax.setTracer(trace);
+        syntax.setRecovering(recovering);
+        syntax.setProject(project, file);
+        syntax.analyzeSyntax(progress);
+        if (!recovering && !syntax.getDiagnostics().isEmpty()) return of(tokens, syntax.getDiagnostics(), new diagnosticSink());
+        semanticsAction semantics = new semanticsAction(tokens);
+        semantics.setTracer(trace);
+        semantics.setRecovering(recovering);
+        semantics.setProject(project, file);
+        semantics.analyzeSemantics(progress);
+        return of(tokens, syntax.getDiagnostics(), semantics.getDiagnostics());
+    }
+
+    public tokenStream getTokens() {
+        return tokens;
+    }
+
+    public boolean lexicalSuccessStatus() {
+        return lexicalErrors.isEmpty();
+    }
+
+    // Same text as lexicalAction.getErrors()
+    public String getErrors() {
+        StringBuilder errorContent = new StringBuilder();
+        for (int i = 0; i < lexicalErrors.size(); i++) {
+            errorContent.append("Line " + lexicalErrors.lineAt(i) + ": " + lexicalErrors.valueAt(i) + "\n");
+        }
+        return errorContent.toString();
+    }
+
+    public lineMap<String> getLexicalErrorLines() {
+        return lexicalErrorLines;
+    }
+
+    public diagnosticSink getSyntaxDiagnostics() {
+        return syntaxDiagnostics;
+    }
+
+    public lineMap<String> getSyntaxErrors() {
+        return syntaxDiagnostics.errorsByLine();
+    }
+
+    public diagnosticSink getSemanticDiagnostics() {
+        return semanticDiagnostics;
+    }
+
+    public lineMap<String> getSemanticErrors() {
+        return semanticDiagnostics.errorsByLine();
+    }
+
+    // Lines that held any text
+    public int lineCount() {
+        return lineCount;
+    }
+
+    public long tokenCount() {
+        return tokenCount;
+    }
+
+    public boolean isClean() {
+        return lexicalErrors.isEmpty() && syntaxDiagnostics.isEmpty() && semanticDiagnostics.isEmpty();
+    }
+}
@@ -0,0 +1,159 @@
+package com.prismx.model;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Opt-in trace sink. trace() only queues the message; one daemon thread drains the queue in
+// batches into a buffered writer and flushes whenever the queue runs dry, so the phases never
+// wait on console or disk I/O and parallel workers never contend on System.out's lock. A full
+// queue blocks the caller rather than growing without bound. close() writes out what is queued.
+public class asyncTracer implements tracer, AutoCloseable {
+    private static final int QUEUE = 8192;
+    private static final String END = new String("end");
+
+    private final int[] levels = new int[3];
+    private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(QUEUE);
+    private final Writer out;
+    private final boolean closeOut;
+    private final Thread writer;
+    private volatile IOException failure;
+
+    // target is "-" for standard error (standard output carries results) or a file path; levels as in parseLevels().
+    public static asyncTracer open(String target, String levels) throws IOException {
+        asyncTracer tracer = target.equals("-")
+                ? new asyncTracer(new OutputStreamWriter(System.err, StandardCharsets.UTF_8), false)
+                : new asyncTracer(new OutputStreamWriter(new FileOutputStream(target), StandardCharsets.UTF_8), true);
+        tracer.parseLevels(levels);
+        return tracer;
+    }
+
+    // Tracing is opt-in through -Dprismx.trace=-|FILE and -Dprismx.trace.level=...; NONE otherwise.
+    public static tracer fromSystemProperties() {
+        String target = System.getProperty("prismx.trace");
+        if (target == null || target.isEmpty()) return NONE;
+        try {
+            asyncTracer tracer = open(target, System.getProperty("prismx.trace.level", "all"));
+            Runtime.getRuntime().addShutdownHook(new Thread(tracer::close));
+            return tracer;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Tracing disabled: " + e.getMessage());
+            return NONE;
+        }
+    }
+
+    public asyncTracer(Writer out, boolean closeOut) {
+        this.out = new BufferedWriter(out, 1 << 16);
+        this.closeOut = closeOut;
+        Arrays.fill(levels, ALL);
+        this.writer = new Thread(this::drain, "prism-trace");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public asyncTracer setLevel(byte phase, int level) {
+        levels[phase] = level;
+        return this;
+    }
+
+    // "all", "errors" or "off" for every phase, or per phase: "lexical=off,syntax=errors,semantic=all".
+    public asyncTracer parseLevels(String spec) {
+        for (String part : spec.split(",")) {
+            String item = part.trim();
+            int equals = item.indexOf('=');
+            if (equals < 0) {
+                int level = parseLevel(item);
+                Arrays.fill(levels, level);
+                continue;
+            }
+            String phase = item.substring(0, equals).trim();
+            int level = parseLevel(item.substring(equals + 1).trim());
+            switch (phase) {
+                case "lexical": setLevel(diagnostic.LEXICAL, level); break;
+                case "syntax": setLevel(diagnostic.SYNTAX, level); break;
+                case "semantic": setLevel(diagnostic.SEMANTIC, level); break;
+                default: throw new IllegalArgumentException("Unknown trace phase: " + phase);
+            }
+        }
+        return this;
+    }
+
+    private static int parseLevel(String name) {
+        switch (name) {
+            case "off": return OFF;
+            case "errors": return ERRORS;
+            case "all": return ALL;
+            default: throw new IllegalArgumentException("Unknown trace level: " + name);
+        }
+    }
+
+    @Override
+    public int level(byte phase) {
+        return levels[phase];
+    }
+
+    @Override
+    public void trace(byte phase, String message) {
+        try {
+            // the writer may have stopped on an I/O error or close(); never wait on a dead one
+            while (!queue.offer(message, 100, TimeUnit.MILLISECONDS)) {
+                if (!writer.isAlive()) return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        ArrayList<String> batch = new ArrayList<>(QUEUE);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                for (String message : batch) {
+                    if (message == END) {
+                        out.flush();
+                        return;
+                    }
+                    out.write(message);
+                    out.write('\n');
+                }
+                batch.clear();
+                if (queue.isEmpty()) out.flush();
+            }
+        } catch (IOException e) {
+            failure = e;
+        } catch (InterruptedException e) {
+            // abandoned; whatever was written is flushed below
+        } finally {
+            try {
+                if (closeOut) out.close(); else out.flush();
+            } catch (IOException e) {
+                if (failure == null) failure = e;
+            }
+        }
+    }
+
+    // Writes out everything traced so far; later messages are dropped.
+    @Override
+    public void close() {
+        if (writer.isAlive()) {
+            try {
+                queue.put(END);
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure != null) throw new UncheckedIOException(failure);
+    }
+}
@@ -0,0 +1,65 @@
+package com.prismx.model;
+
+public enum dataType {
+    BYTE("byte"),
+    SHORT("short"),
+    INT("int"),
+    LONG("long"),
+    FLOAT("float"),
+    DOUBLE("double"),
+    CHAR("char"),
+    STRING("String"),
+    BOOLEAN("boolean"),
+    UNKNOWN("unknown");
+
+    private static final dataType[] VALUES = values();
+
+    // WIDENS[from][to]: a literal of type 'from' may be assigned to 'to' without a range check.
+    // Numeric types widen along byte < short < int < long < float < double; char stays char-only.
+    private static final boolean[][] WIDENS = new boolean[VALUES.length][VALUES.length];
+
+    static {
+        dataType[] numeric = {BYTE, SHORT, INT, LONG, FLOAT, DOUBLE};
+        for (dataType type : VALUES) {
+            WIDENS[type.ordinal()][type.ordinal()] = true;
+        }
+        for (int from = 0; from < numeric.length; from++) {
+            for (int to = from + 1; to < numeric.length; to++) {
+                WIDENS[numeric[from].ordinal()][numeric[to].ordinal()] = true;
+            }
+        }
+    }
+
+    private final String keyword;
+
+    dataType(String keyword) {
+        this.keyword = keyword;
+    }
+
+    public String keyword() {
+        return keyword;
+    }
+
+    public static dataType fromOrdinal(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    public boolean widensTo(dataType target) {
+        return WIDENS[ordinal()][target.ordinal()];
+    }
+
+    // Keyword of a <data_type> token, matched in place without building its String.
+    public static dataType of(tokenStream tokens, int token) {
+        for (dataType type : VALUES) {
+            if (type != UNKNOWN && tokens.lexemeEquals(token, type.keyword)) {
+                return type;
+            }
+        }
+        return UNKNOWN;
+    }
+
+    @Override
+    public String toString() {
+        return keyword;
+    }
+}
@@ -0,0 +1,13 @@
+package com.prismx.model;
+
+// One reported problem. column is the 1-based position of the offending token in its line
+// (0 when the line as a whole is at fault); the message is built from the code on demand.
+public record diagnostic(int line, int column, byte phase, diagnosticCode code, Object[] arguments) {
+    public static final byte LEXICAL = 0;
+    public static final byte SYNTAX = 1;
+    public static final byte SEMANTIC = 2;
+
+    public String message() {
+        return code.format(arguments);
+    }
+}
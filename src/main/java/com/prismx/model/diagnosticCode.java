@@ -0,0 +1,56 @@
+package com.prismx.model;
+
+// Message templates for everything the syntax and semantic phases report. Arguments are only
+// substituted when a message is actually shown.
+public enum diagnosticCode {
+    // worded like the IndexOutOfBoundsException the phases used to surface for short lines
+    TOKEN_MISSING("Index %s out of bounds for length %s"),
+
+    // syntax
+    LEXICAL_ERROR("Lexical Error detected: Invalid symbol '%s'"),
+    INVALID_STATEMENT_START("Invalid Statement Start. Expected Data Type or Identifier, found '%s'"),
+    INCOMPLETE_DECLARATION("Statement incomplete. Minimum declaration is 'type variable;'"),
+    INCOMPLETE_INITIALIZATION("Initialization statement incomplete."),
+    INCOMPLETE_STATEMENT("Statement incomplete."),
+    EXPECTED_VARIABLE_NAME("Expected variable name, found: %s"),
+    EXPECTED_VALUE("Expected a value, found: %s"),
+    UNEXPECTED_DELIMITER("Unexpected ';'. Expected a value."),
+    EXPECTED_DELIMITER("Expected ';', found: %s"),
+    EXPECTED_DELIMITER_OR_ASSIGNMENT("Expected ';' or '=', found: %s"),
+    EXPECTED_ASSIGNMENT("Expected '=', found: %s"),
+    UNDECLARED_VARIABLE("Variable '%s' has not been declared!"),
+    EXPECTED_NEW_LINE_AFTER_BRACE("Expected a new line after a block brace, found: %s"),
+    UNMATCHED_CLOSE_BRACE("Unexpected '}'. There is no open block to close."),
+    UNCLOSED_BLOCK("Reached end of file while parsing. This '{' is never closed."),
+
+    // semantics
+    ALREADY_DECLARED("Variable '%s' is already declared."),
+    NOT_DECLARED("Variable '%s' is not declared."),
+    INT_OUT_OF_RANGE("Value %s is out of range for int (-2147483648 to 2147483647)."),
+    LONG_OUT_OF_RANGE("Value %s is out of range for long (-9223372036854775808 to 9223372036854775807)."),
+    BYTE_OUT_OF_RANGE("Value %s is out of range for byte (-128 to 127)."),
+    SHORT_OUT_OF_RANGE("Value %s is out of range for short (-32768 to 32767)."),
+    TYPE_MISMATCH("Type Mismatch: Cannot assign %s (%s) to %s variable."),
+    // project mode; it and the codes below come last so the codes stored by the result cache keep their numbers
+    DECLARED_IN_OTHER_FILE("Variable '%s' is already declared in %s (line %s)."),
+    // expressions
+    EXPECTED_CLOSE_PAREN("Expected ')', found: %s"),
+    EXPRESSION_TOO_DEEP("Expression nested too deeply."),
+    BAD_OPERAND_TYPE("Operator '%s' cannot be applied to %s."),
+    BAD_OPERAND_TYPES("Operator '%s' cannot be applied to %s and %s."),
+    DIVISION_BY_ZERO("Division by zero in constant expression: %s");
+
+    private final String template;
+
+    diagnosticCode(String template) {
+        this.template = template;
+    }
+
+    public String template() {
+        return template;
+    }
+
+    public String format(Object[] arguments) {
+        return arguments.length == 0 ? template : String.format(template, arguments);
+    }
+}
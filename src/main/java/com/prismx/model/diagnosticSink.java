@@ -0,0 +1,106 @@
+package com.prismx.model;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+// Diagnostics in report order, kept column-wise like tokenStream. Reporting never throws and
+// never formats; message(i) and errorsByLine() build the text when it is about to be shown.
+public class diagnosticSink {
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private int[] lines;
+    private int[] columns;
+    private byte[] phases;
+    private diagnosticCode[] codes;
+    private Object[][] arguments;
+    private int size;
+
+    public diagnosticSink() {
+        this(64);
+    }
+
+    public diagnosticSink(int expectedDiagnostics) {
+        int capacity = Math.max(4, expectedDiagnostics);
+        this.lines = new int[capacity];
+        this.columns = new int[capacity];
+        this.phases = new byte[capacity];
+        this.codes = new diagnosticCode[capacity];
+        this.arguments = new Object[capacity][];
+    }
+
+    public void report(int line, int column, byte phase, diagnosticCode code) {
+        report(line, column, phase, code, NO_ARGUMENTS);
+    }
+
+    public void report(int line, int column, byte phase, diagnosticCode code, Object... args) {
+        if (size == lines.length) {
+            int capacity = size * 2;
+            lines = Arrays.copyOf(lines, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+            phases = Arrays.copyOf(phases, capacity);
+            codes = Arrays.copyOf(codes, capacity);
+            arguments = Arrays.copyOf(arguments, capacity);
+        }
+        lines[size] = line;
+        columns[size] = column;
+        phases[size] = phase;
+        codes[size] = code;
+        arguments[size] = args;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(codes, 0, size, null);
+        Arrays.fill(arguments, 0, size, null);
+        size = 0;
+    }
+
+    public int line(int index) {
+        return lines[Objects.checkIndex(index, size)];
+    }
+
+    public int column(int index) {
+        return columns[Objects.checkIndex(index, size)];
+    }
+
+    public byte phase(int index) {
+        return phases[Objects.checkIndex(index, size)];
+    }
+
+    public diagnosticCode code(int index) {
+        return codes[Objects.checkIndex(index, size)];
+    }
+
+    public String message(int index) {
+        return codes[Objects.checkIndex(index, size)].format(arguments[index]);
+    }
+
+    public diagnostic get(int index) {
+        Objects.checkIndex(index, size);
+        return new diagnostic(lines[index], columns[index], phases[index], codes[index], arguments[index]);
+    }
+
+    // Formatted messages by line; different messages for one line (recovering mode reports one per
+    // statement) are joined with "; ".
+    public lineMap<String> errorsByLine() {
+        lineMap<String> errors = new lineMap<>(size);
+        for (int i = 0; i < size; i++) {
+            String message = codes[i].format(arguments[i]);
+            String earlier = errors.get(lines[i]);
+            if (earlier == null) {
+                errors.put(lines[i], message);
+            } else if (!earlier.equals(message)) {
+                errors.put(lines[i], earlier + "; " + message);
+            }
+        }
+        return errors;
+    }
+}
@@ -0,0 +1,237 @@
+package com.prismx.model;
+
+import java.util.Arrays;
+
+// The expression to the right of an '=', parsed by precedence climbing into parallel arrays:
+// a node is an index, its children are indices, and the arrays are reused by the next parse, so
+// a file of any size parses into the same few arrays. Children always get lower indices than
+// their parent, so a loop from 0 to size() visits operands before the operators using them.
+//   expression := unary (('+' | '-' | '*' | '/' | '%') unary)*   -- '*' '/' '%' bind tighter, all left-associative
+//   unary      := ('+' | '-') unary | <value> | <identifier> | '(' expression ')'
+// The type and folded value columns are left for semanticsAction to fill in.
+public final class expressionTree {
+    public static final byte VALUE = 0;
+    public static final byte NAME = 1;
+    public static final byte UNARY = 2;
+    public static final byte BINARY = 3;
+
+    // deeper nesting than this is reported rather than risking the stack
+    static final int MAX_DEPTH = 256;
+
+    private byte[] kinds;
+    // the operand's token, or the operator's
+    private int[] tokens;
+    private int[] lefts;
+    private int[] rights;
+    // tokens [first, end) the node spans, parentheses included
+    private int[] firsts;
+    private int[] ends;
+    private byte[] types;
+    private boolean[] constants;
+    private long[] values;
+    private int size;
+
+    private tokenStream stream;
+    private int next;
+    private int end;
+    private int depth;
+    private int errorToken;
+    private diagnosticCode errorCode;
+
+    public expressionTree() {
+        this(16);
+    }
+
+    public expressionTree(int expectedNodes) {
+        int capacity = Math.max(4, expectedNodes);
+        kinds = new byte[capacity];
+        tokens = new int[capacity];
+        lefts = new int[capacity];
+        rights = new int[capacity];
+        firsts = new int[capacity];
+        ends = new int[capacity];
+        types = new byte[capacity];
+        constants = new boolean[capacity];
+        values = new long[capacity];
+    }
+
+    // Parses the longest expression starting at token from, stopping before token end. Returns the
+    // root node, or -1 with errorToken() and errorCode() saying why; the nodes of a previous parse
+    // are dropped either way.
+    public int parse(tokenStream tokens, int from, int end) {
+        this.stream = tokens;
+        this.next = from;
+        this.end = end;
+        this.depth = 0;
+        this.size = 0;
+        this.errorToken = -1;
+        this.errorCode = null;
+        int root = expression(1);
+        this.stream = null;
+        return root;
+    }
+
+    private int expression(int minPrecedence) {
+        if (++depth > MAX_DEPTH) return fail(next, diagnosticCode.EXPRESSION_TOO_DEEP);
+        int left = unary();
+        while (left >= 0 && next < end && stream.kind(next) == tokenStream.OPERATOR) {
+            int precedence = precedence(operator(stream, next));
+            if (precedence < minPrecedence) break;
+            int operatorToken = next++;
+            int right = expression(precedence + 1);
+            left = right < 0 ? -1 : node(BINARY, operatorToken, left, right, firsts[left], ends[right]);
+        }
+        depth--;
+        return left;
+    }
+
+    private int unary() {
+        if (next == end) return fail(end, null);
+        int token = next;
+        byte kind = stream.kind(token);
+        if (kind == tokenStream.VALUE || kind == tokenStream.IDENTIFIER) {
+            next++;
+            return node(kind == tokenStream.VALUE ? VALUE : NAME, token, -1, -1, token, token + 1);
+        }
+        if (kind == tokenStream.OPERATOR && lexicalAction.isSign(operator(stream, token))) {
+            next++;
+            if (++depth > MAX_DEPTH) return fail(token, diagnosticCode.EXPRESSION_TOO_DEEP);
+            int operand = unary();
+            depth--;
+            return operand < 0 ? -1 : node(UNARY, token, operand, -1, token, ends[operand]);
+        }
+        if (kind == tokenStream.OPEN_PAREN) {
+            next++;
+            int inner = expression(1);
+            if (inner < 0) return -1;
+            if (next == end) return fail(end, null);
+            if (stream.kind(next) != tokenStream.CLOSE_PAREN) return fail(next, diagnosticCode.EXPECTED_CLOSE_PAREN);
+            firsts[inner] = token;
+            ends[inner] = ++next;
+            return inner;
+        }
+        return fail(token, kind == tokenStream.DELIMITER ? diagnosticCode.UNEXPECTED_DELIMITER : diagnosticCode.EXPECTED_VALUE);
+    }
+
+    private static int precedence(char operator) {
+        return operator == '+' || operator == '-' ? 1 : 2;
+    }
+
+    static char operator(tokenStream tokens, int token) {
+        return tokens.lexeme(token).charAt(0);
+    }
+
+    private int node(byte kind, int token, int left, int right, int first, int end) {
+        if (size == kinds.length) {
+            int capacity = size * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            tokens = Arrays.copyOf(tokens, capacity);
+            lefts = Arrays.copyOf(lefts, capacity);
+            rights = Arrays.copyOf(rights, capacity);
+            firsts = Arrays.copyOf(firsts, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+            types = Arrays.copyOf(types, capacity);
+            constants = Arrays.copyOf(constants, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        kinds[size] = kind;
+        tokens[size] = token;
+        lefts[size] = left;
+        rights[size] = right;
+        firsts[size] = first;
+        ends[size] = end;
+        types[size] = (byte) dataType.UNKNOWN.ordinal();
+        constants[size] = false;
+        values[size] = 0;
+        return size++;
+    }
+
+    private int fail(int token, diagnosticCode code) {
+        errorToken = token;
+        errorCode = code;
+        return -1;
+    }
+
+    // Token after the parsed expression: where the ';' should be.
+    public int end() {
+        return next;
+    }
+
+    // Token the failed parse stopped at; the end passed to parse() when the tokens ran out.
+    public int errorToken() {
+        return errorToken;
+    }
+
+    // null when the tokens ran out before the expression was complete
+    public diagnosticCode errorCode() {
+        return errorCode;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public byte kind(int node) {
+        return kinds[node];
+    }
+
+    public int token(int node) {
+        return tokens[node];
+    }
+
+    public int left(int node) {
+        return lefts[node];
+    }
+
+    public int right(int node) {
+        return rights[node];
+    }
+
+    public int first(int node) {
+        return firsts[node];
+    }
+
+    public int end(int node) {
+        return ends[node];
+    }
+
+    public dataType type(int node) {
+        return dataType.fromOrdinal(types[node]);
+    }
+
+    public boolean isConstant(int node) {
+        return constants[node];
+    }
+
+    public long value(int node) {
+        return values[node];
+    }
+
+    public void setType(int node, dataType type) {
+        types[node] = (byte) type.ordinal();
+        constants[node] = false;
+    }
+
+    public void setConstant(int node, dataType type, long value) {
+        types[node] = (byte) type.ordinal();
+        constants[node] = true;
+        values[node] = value;
+    }
+
+    // Tokens [first, end) of an expression spaced the usual way, e.g. "-a * (4 + 1)", for messages.
+    public static String text(tokenStream tokens, int first, int end) {
+        StringBuilder text = new StringBuilder();
+        for (int t = first; t < end; t++) {
+            if (t > first && tokens.kind(t) != tokenStream.CLOSE_PAREN && !opens(tokens, first, t - 1)) text.append(' ');
+            text.append(tokens.lexeme(t));
+        }
+        return text.toString();
+    }
+
+    // '(' or a sign in front of an operand
+    private static boolean opens(tokenStream tokens, int first, int token) {
+        byte kind = tokens.kind(token);
+        if (kind == tokenStream.OPEN_PAREN) return true;
+        return kind == tokenStream.OPERATOR && (token == first || !lexicalAction.endsOperand(tokens.kind(token - 1)));
+    }
+}
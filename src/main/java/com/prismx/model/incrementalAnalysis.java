@@ -0,0 +1,501 @@
+package com.prismx.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Keeps every line's tokens and phase results so that an edit only re-lexes and re-parses the
+// changed lines. A line only ever looks at the variables it names (the one it declares or assigns
+// and those its expression reads), so after an edit the only other lines that can change are the
+// later ones touching a variable whose declarations were added, removed or retyped by the edit.
+// Every line also records the block it sits in for each phase (the two disagree on braces the
+// syntax phase rejects), and a declaration is only seen by the lines inside its block. An edit
+// that adds or removes braces moves the lines after it into other blocks until the braces balance
+// out again; those lines are re-checked, and the variables they declare count as changed.
+public class incrementalAnalysis {
+    private static class lineState {
+        int index;
+        String text;
+        tokenStream tokens;
+        boolean lexicalError;
+        diagnostic syntaxError;
+        diagnostic semanticError;
+        String name;
+        // the other names the right-hand side reads
+        String[] reads = NO_NAMES;
+        boolean declaresName;
+        dataType declaredType;
+        boolean block;
+        // the block the line is in for the syntax and the semantic phase, and the ones its braces leave the next line in
+        scope syntaxScope;
+        scope semanticScope;
+        scope syntaxAfter;
+        scope semanticAfter;
+    }
+
+    // A block of one phase: opened by a '{' of opener, or the whole file when parent is null.
+    private static final class scope {
+        final scope parent;
+        final lineState opener;
+        final int depth;
+
+        scope(scope parent, lineState opener) {
+            this.parent = parent;
+            this.opener = opener;
+            this.depth = parent == null ? 0 : parent.depth + 1;
+        }
+
+        // whether a declaration made in this block is seen from block at
+        boolean encloses(scope at) {
+            while (at.depth > depth) at = at.parent;
+            return at == this;
+        }
+    }
+
+    private static final String[] NO_NAMES = new String[0];
+
+    private final ArrayList<lineState> lines = new ArrayList<>();
+    private final HashMap<String, ArrayList<lineState>> linesByName = new HashMap<>();
+    private final diagnosticSink scratch = new diagnosticSink(4);
+    private final expressionTree expressions = new expressionTree();
+    private final scope syntaxFile = new scope(null, null);
+    private final scope semanticFile = new scope(null, null);
+    // the '{' lines marked unclosed, outermost first, as syntaxAction reports them after the last line
+    private final ArrayList<lineState> unclosed = new ArrayList<>();
+    private int checkedLines;
+    private int tokenCount;
+    private int lexicalErrors;
+    private int syntaxErrors;
+    private int semanticErrors;
+
+    public incrementalAnalysis(sourceFile source) {
+        load(lines(source));
+    }
+
+    public incrementalAnalysis(List<String> text) {
+        load(text);
+    }
+
+    // Full pass, same order and state as the batch phases.
+    private void load(List<String> text) {
+        for (String line : text) {
+            lineState state = lex(line);
+            state.index = lines.size();
+            lines.add(state);
+            index(state);
+        }
+        analyzeAll();
+    }
+
+    private void analyzeAll() {
+        symbolTable declaredVariables = new symbolTable();
+        symbolTable symbols = new symbolTable();
+        scope syntaxScope = syntaxFile;
+        scope semanticScope = semanticFile;
+        checkedLines = 0;
+        for (lineState state : lines) {
+            state.syntaxScope = syntaxScope;
+            state.semanticScope = semanticScope;
+            analyze(state, declaredVariables, symbols);
+            syntaxScope = state.syntaxAfter;
+            semanticScope = state.semanticAfter;
+        }
+        markUnclosed();
+    }
+
+    public void setLine(int lineNumber, String text) {
+        replaceLines(lineNumber, 1, List.of(text));
+    }
+
+    // Line-level diff: removeCount lines starting at firstLine (1-based) are replaced by newLines.
+    public void replaceLines(int firstLine, int removeCount, List<String> newLines) {
+        int from = firstLine - 1;
+        if (from < 0 || removeCount < 0 || from + removeCount > lines.size()) {
+            throw new IndexOutOfBoundsException("Lines " + firstLine + "-" + (firstLine + removeCount - 1) + " out of range 1-" + lines.size());
+        }
+
+        checkedLines = 0;
+        boolean braces = false;
+        HashMap<String, StringBuilder> oldEffects = new HashMap<>();
+        HashMap<String, ArrayList<scope>> reach = new HashMap<>();
+        for (lineState state : lines.subList(from, from + removeCount)) {
+            braces |= state.block;
+            recordEffect(oldEffects, state);
+            recordReach(reach, state);
+            unindex(state);
+            setResults(state, false, null, null);
+        }
+
+        HashMap<String, StringBuilder> newEffects = new HashMap<>();
+        ArrayList<lineState> added = new ArrayList<>(newLines.size());
+        for (String text : newLines) {
+            lineState state = lex(text);
+            braces |= state.block;
+            recordEffect(newEffects, state);
+            added.add(state);
+        }
+
+        // overwrite in place where the counts overlap so a same-size edit never shifts the list
+        int overlap = Math.min(removeCount, added.size());
+        for (int i = 0; i < overlap; i++) {
+            lines.set(from + i, added.get(i));
+            added.get(i).index = from + i;
+        }
+        if (removeCount > overlap) {
+            lines.subList(from + overlap, from + removeCount).clear();
+        } else if (added.size() > overlap) {
+            lines.addAll(from + overlap, added.subList(overlap, added.size()));
+        }
+        if (removeCount != added.size()) {
+            for (int i = from + overlap; i < lines.size(); i++) {
+                lines.get(i).index = i;
+            }
+        }
+        for (lineState state : added) {
+            index(state);
+        }
+        int after = rescope(from, from + added.size(), reach);
+        for (lineState state : added) {
+            recordReach(reach, state);
+        }
+        markUnclosed();
+
+        for (Map.Entry<String, ArrayList<scope>> changed : reach.entrySet()) {
+            String name = changed.getKey();
+            StringBuilder before = oldEffects.get(name);
+            StringBuilder now = newEffects.get(name);
+            // the same declarations in other blocks are still a change
+            if (!braces && before != null && now != null && before.toString().equals(now.toString())) continue;
+
+            ArrayList<lineState> touching = linesByName.get(name);
+            if (touching == null) continue;
+            for (lineState state : touching) {
+                if (state.index >= after && reaches(changed.getValue(), state)) {
+                    recheck(state);
+                }
+            }
+        }
+    }
+
+    // The blocks a declaration made or dropped by the edit is seen in, by the name it declares.
+    private static void recordReach(Map<String, ArrayList<scope>> reach, lineState state) {
+        if (state.name == null || state.declaredType == null) return;
+        ArrayList<scope> scopes = reach.computeIfAbsent(state.name, k -> new ArrayList<>(2));
+        scopes.add(state.syntaxScope);
+        scopes.add(state.semanticScope);
+    }
+
+    private static boolean reaches(ArrayList<scope> scopes, lineState state) {
+        for (scope declared : scopes) {
+            if (declared.encloses(state.syntaxScope) || declared.encloses(state.semanticScope)) return true;
+        }
+        return false;
+    }
+
+    // Re-checks the added lines [from, addedEnd) in the blocks the lines above leave them in, then
+    // the lines after them for as long as the edit's braces put them in other blocks than before;
+    // the declarations of those lines go to reach in their old and new blocks. Returns the index of
+    // the first line it left alone: from there on every line is in the same blocks as before.
+    private int rescope(int from, int addedEnd, Map<String, ArrayList<scope>> reach) {
+        scope syntaxScope = from == 0 ? syntaxFile : lines.get(from - 1).syntaxAfter;
+        scope semanticScope = from == 0 ? semanticFile : lines.get(from - 1).semanticAfter;
+        int i = from;
+        for (; i < lines.size(); i++) {
+            lineState state = lines.get(i);
+            if (i >= addedEnd) {
+                if (state.syntaxScope == syntaxScope && state.semanticScope == semanticScope) break;
+                recordReach(reach, state);
+            }
+            state.syntaxScope = syntaxScope;
+            state.semanticScope = semanticScope;
+            if (i >= addedEnd) recordReach(reach, state);
+            recheck(state);
+            syntaxScope = state.syntaxAfter;
+            semanticScope = state.semanticAfter;
+        }
+        return i;
+    }
+
+    // Clears the previous unclosed marks and marks the '{' lines whose blocks the last line leaves open.
+    private void markUnclosed() {
+        for (lineState state : unclosed) {
+            // lines removed or re-checked since lost their mark already
+            if (state.index < lines.size() && lines.get(state.index) == state && state.syntaxError != null
+                    && state.syntaxError.code() == diagnosticCode.UNCLOSED_BLOCK) {
+                setResults(state, true, null, state.semanticError);
+            }
+        }
+        unclosed.clear();
+        for (scope open = lines.isEmpty() ? syntaxFile : lines.get(lines.size() - 1).syntaxAfter; open.parent != null; open = open.parent) {
+            unclosed.add(0, open.opener);
+        }
+        for (lineState state : unclosed) {
+            diagnostic error = new diagnostic(state.index + 1, 1, diagnostic.SYNTAX, diagnosticCode.UNCLOSED_BLOCK, new Object[0]);
+            setResults(state, true, error, state.semanticError);
+        }
+    }
+
+    // Re-diffs the whole text against the current lines, touching only the differing middle block.
+    public void update(List<String> text) {
+        int prefix = 0;
+        int limit = Math.min(text.size(), lines.size());
+        while (prefix < limit && sameLine(lines.get(prefix), text.get(prefix))) prefix++;
+        int suffix = 0;
+        while (suffix < limit - prefix
+                && sameLine(lines.get(lines.size() - 1 - suffix), text.get(text.size() - 1 - suffix))) suffix++;
+        if (prefix == lines.size() && prefix == text.size()) return;
+        replaceLines(prefix + 1, lines.size() - prefix - suffix, text.subList(prefix, text.size() - suffix));
+    }
+
+    // Same as update(List) with the lines of source, e.g. the file as a save left it.
+    public void update(sourceFile source) {
+        update(lines(source));
+    }
+
+    private static List<String> lines(sourceFile source) {
+        List<String> text = new ArrayList<>(source.lineCount());
+        for (int i = 1; i <= source.lineCount(); i++) {
+            text.add(source.line(i));
+        }
+        return text;
+    }
+
+    private static boolean sameLine(lineState state, String text) {
+        return state.text.equals(text);
+    }
+
+    private lineState lex(String text) {
+        if (text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            throw new IllegalArgumentException("A line cannot contain a line terminator");
+        }
+        lineState state = new lineState();
+        state.text = text;
+        state.tokens = lexicalAction.lexLine(text);
+        if (state.tokens.lineCount() == 0) {
+            return state;
+        }
+        tokenStream tokens = state.tokens;
+        int size = tokens.lineSize(0);
+        state.lexicalError = tokens.lineHasKind(0, tokenStream.ERROR);
+        if (size == 0) {
+            return state;
+        }
+        byte first = tokens.lineKind(0, 0);
+        if (first == tokenStream.DATA_TYPE && size >= 2) {
+            state.name = tokens.lineLexeme(0, 1);
+            state.declaresName = size >= 3 && tokens.lineKind(0, 1) == tokenStream.IDENTIFIER;
+            state.declaredType = dataType.of(tokens, tokens.lineToken(0, 0));
+            state.reads = reads(tokens, 2, state.name);
+        } else if (first == tokenStream.IDENTIFIER) {
+            state.name = tokens.lineLexeme(0, 0);
+            state.reads = reads(tokens, 1, state.name);
+        }
+        state.block = syntaxAction.isBlockLine(tokens, 0);
+        return state;
+    }
+
+    // Distinct identifiers from position from on, other than name.
+    private static String[] reads(tokenStream tokens, int from, String name) {
+        ArrayList<String> reads = null;
+        for (int t = tokens.firstToken(0) + from; t < tokens.endToken(0); t++) {
+            if (tokens.kind(t) != tokenStream.IDENTIFIER) continue;
+            String read = tokens.lexeme(t);
+            if (read.equals(name) || (reads != null && reads.contains(read))) continue;
+            if (reads == null) reads = new ArrayList<>(2);
+            reads.add(read);
+        }
+        return reads == null ? NO_NAMES : reads.toArray(NO_NAMES);
+    }
+
+    private static void recordEffect(Map<String, StringBuilder> effects, lineState state) {
+        if (state.name == null || state.declaredType == null) return;
+        effects.computeIfAbsent(state.name, k -> new StringBuilder())
+                .append(state.declaresName ? '+' : '-').append(state.declaredType).append(';');
+    }
+
+    private void index(lineState state) {
+        if (state.lexicalError) lexicalErrors++;
+        tokenCount += state.tokens.tokenCount();
+        if (state.name != null) {
+            linesByName.computeIfAbsent(state.name, k -> new ArrayList<>()).add(state);
+        }
+        for (String read : state.reads) {
+            linesByName.computeIfAbsent(read, k -> new ArrayList<>()).add(state);
+        }
+    }
+
+    private void unindex(lineState state) {
+        if (state.lexicalError) lexicalErrors--;
+        tokenCount -= state.tokens.tokenCount();
+        if (state.name != null) unindex(state, state.name);
+        for (String read : state.reads) {
+            unindex(state, read);
+        }
+    }
+
+    private void unindex(lineState state, String name) {
+        ArrayList<lineState> touching = linesByName.get(name);
+        touching.remove(state);
+        if (touching.isEmpty()) linesByName.remove(name);
+    }
+
+    // Rebuilds just the slice of the syntax/semantic state this line can see: the variables it
+    // names, in tables as deep as its blocks so a brace line checks against the right depth.
+    private void recheck(lineState state) {
+        symbolTable declaredVariables = new symbolTable(1 + state.reads.length);
+        symbolTable symbols = new symbolTable(1 + state.reads.length);
+        for (int i = 0; i < state.syntaxScope.depth; i++) declaredVariables.pushScope();
+        for (int i = 0; i < state.semanticScope.depth; i++) symbols.pushScope();
+        if (state.name != null) declareAbove(state, state.name, declaredVariables, symbols);
+        for (String read : state.reads) {
+            declareAbove(state, read, declaredVariables, symbols);
+        }
+        analyze(state, declaredVariables, symbols);
+    }
+
+    // Declares name as the lines above state left it. Of the declarations in blocks state is in,
+    // the first one holds: any later one was already a redeclaration when it was reached.
+    private void declareAbove(lineState state, String name, symbolTable declaredVariables, symbolTable symbols) {
+        lineState firstDeclaration = null;
+        lineState firstTyped = null;
+        for (lineState other : linesByName.get(name)) {
+            if (other.index >= state.index || !name.equals(other.name)) continue;
+            if (other.declaresName && (firstDeclaration == null || other.index < firstDeclaration.index)
+                    && other.syntaxScope.encloses(state.syntaxScope)) {
+                firstDeclaration = other;
+            }
+            if (other.declaredType != null && (firstTyped == null || other.index < firstTyped.index)
+                    && other.semanticScope.encloses(state.semanticScope)) {
+                firstTyped = other;
+            }
+        }
+        if (firstDeclaration != null) declaredVariables.declare(name, firstDeclaration.declaredType);
+        if (firstTyped != null) symbols.declare(name, firstTyped.declaredType);
+    }
+
+    private void analyze(lineState state, symbolTable declaredVariables, symbolTable symbols) {
+        checkedLines++;
+        state.syntaxAfter = state.syntaxScope;
+        state.semanticAfter = state.semanticScope;
+        if (state.tokens.lineCount() == 0) {
+            setResults(state, false, null, null);
+            return;
+        }
+        // each line is lexed on its own, so the diagnostics say line 1; results are keyed by state.index
+        scratch.clear();
+        diagnostic syntaxError = syntaxAction.checkLine(state.tokens, 0, declaredVariables, expressions, scratch) ? null : scratch.get(0);
+        diagnostic semanticError = null;
+        if (state.tokens.lineSize(0) > 0 && !semanticsAction.analyzeLine(state.tokens, 0, symbols, expressions, scratch)) {
+            semanticError = scratch.get(scratch.size() - 1);
+        }
+        setResults(state, true, syntaxError, semanticError);
+        if (state.block) {
+            // the syntax phase only opens and closes blocks for a brace line it accepts; the semantic one for any
+            if (syntaxError == null) state.syntaxAfter = enter(state, state.syntaxScope, true);
+            state.semanticAfter = enter(state, state.semanticScope, false);
+        }
+    }
+
+    // The block the braces of state leave the next line in, starting from block in; strict: a '}'
+    // always has a block to close (the syntax phase checked), otherwise one at file level is ignored.
+    private static scope enter(lineState state, scope in, boolean strict) {
+        tokenStream tokens = state.tokens;
+        for (int t = tokens.firstToken(0); t < tokens.endToken(0); t++) {
+            if (tokens.kind(t) == tokenStream.OPEN_BRACE) {
+                in = new scope(in, state);
+            } else if (tokens.kind(t) == tokenStream.CLOSE_BRACE && (strict || in.parent != null)) {
+                in = in.parent;
+            }
+        }
+        return in;
+    }
+
+    private void setResults(lineState state, boolean present, diagnostic syntaxError, diagnostic semanticError) {
+        if (state.syntaxError != null) syntaxErrors--;
+        if (state.semanticError != null) semanticErrors--;
+        state.syntaxError = present ? syntaxError : null;
+        state.semanticError = present ? semanticError : null;
+        if (state.syntaxError != null) syntaxErrors++;
+        if (state.semanticError != null) semanticErrors++;
+    }
+
+    public int lineCount() {
+        return lines.size();
+    }
+
+    // How many lines the last load or edit checked, itself included.
+    int checkedLines() {
+        return checkedLines;
+    }
+
+    public boolean lexicalSuccessStatus() {
+        return lexicalErrors == 0;
+    }
+
+    public int syntaxErrorCount() {
+        return syntaxErrors;
+    }
+
+    public int semanticErrorCount() {
+        return semanticErrors;
+    }
+
+    public String syntaxError(int lineNumber) {
+        diagnostic error = lines.get(lineNumber - 1).syntaxError;
+        return error == null ? null : error.message();
+    }
+
+    public String semanticError(int lineNumber) {
+        diagnostic error = lines.get(lineNumber - 1).semanticError;
+        return error == null ? null : error.message();
+    }
+
+    public lineMap<String> getSyntaxErrors() {
+        lineMap<String> errors = new lineMap<>(syntaxErrors);
+        for (lineState state : lines) {
+            if (state.syntaxError != null) errors.put(state.index + 1, state.syntaxError.message());
+        }
+        return errors;
+    }
+
+    // What analysisResult.analyze() reports for the text without recovering: the tokens of every
+    // line that has any, and only the phases a staged run gets to.
+    public analysisResult result() {
+        tokenStream tokens = new tokenStream(tokenCount, lines.size());
+        diagnosticSink syntax = new diagnosticSink(syntaxErrors);
+        diagnosticSink semantic = new diagnosticSink(semanticErrors);
+        for (lineState state : lines) {
+            int lineNumber = state.index + 1;
+            if (state.tokens.lineCount() > 0) {
+                for (int t = state.tokens.firstToken(0); t < state.tokens.endToken(0); t++) {
+                    tokens.addToken(state.tokens, t, lineNumber);
+                }
+                tokens.endLine(lineNumber);
+            }
+            // unclosed blocks come after the last line, as syntaxAction reports them
+            if (state.syntaxError != null && state.syntaxError.code() != diagnosticCode.UNCLOSED_BLOCK) {
+                report(syntax, lineNumber, state.syntaxError);
+            }
+            if (state.semanticError != null) report(semantic, lineNumber, state.semanticError);
+        }
+        for (lineState state : unclosed) {
+            syntaxAction.reportUnclosed(state.index + 1, syntax);
+        }
+        if (lexicalErrors > 0) return analysisResult.of(tokens, new diagnosticSink(), new diagnosticSink());
+        if (!syntax.isEmpty()) return analysisResult.of(tokens, syntax, new diagnosticSink());
+        return analysisResult.of(tokens, syntax, semantic);
+    }
+
+    private static void report(diagnosticSink diagnostics, int lineNumber, diagnostic error) {
+        diagnostics.report(lineNumber, error.column(), error.phase(), error.code(), error.arguments());
+    }
+
+    public lineMap<String> getSemanticErrors() {
+        lineMap<String> errors = new lineMap<>(semanticErrors);
+        for (lineState state : lines) {
+            if (state.semanticError != null) errors.put(state.index + 1, state.semanticError.message());
+        }
+        return errors;
+    }
+}
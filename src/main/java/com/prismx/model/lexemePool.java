@@ -0,0 +1,165 @@
+package com.prismx.model;
+
+import java.util.Arrays;
+
+// Lexeme text, with each distinct short lexeme stored once. intern() looks a char range up by its
+// hash (String.hashCode() over the range, so nothing is created to ask) and hands out an int id
+// whose chars, hash and canonical String live here. Keywords, operators and names that repeat
+// all over a file then cost their chars once, and every lexeme() of them is the same instance.
+// Bounded: at most maxEntries distinct lexemes of up to MAX_LENGTH chars are interned; longer
+// ones, and new ones once the pool is full, are appended and stay anonymous. Not thread-safe.
+public class lexemePool {
+    public static final int MAX_LENGTH = 32;
+    public static final int DEFAULT_ENTRIES = 4096;
+    private static final int NONE = -1;
+
+    private char[] chars;
+    private int length;
+
+    // per entry, in the order they were interned, which is also the order of their starts
+    private int[] entryStarts;
+    private int[] entryLengths;
+    private int[] entryHashes;
+    private String[] entryStrings;
+    private int entries;
+    private final int maxEntries;
+    // open addressing over entry ids + 1, grown up to twice maxEntries
+    private int[] slots;
+
+    public lexemePool() {
+        this(64, DEFAULT_ENTRIES);
+    }
+
+    public lexemePool(int expectedChars, int maxEntries) {
+        this.chars = new char[Math.max(16, expectedChars)];
+        this.maxEntries = maxEntries;
+        this.entryStarts = new int[16];
+        this.entryLengths = new int[16];
+        this.entryHashes = new int[16];
+        this.entryStrings = new String[16];
+        this.slots = new int[32];
+    }
+
+    // Where the chars of source[offset, offset + length) are stored: the interned copy when there
+    // is one, else a fresh copy at the end.
+    public int add(char[] source, int offset, int length) {
+        int id = intern(source, offset, length);
+        return id != NONE ? entryStarts[id] : append(source, offset, length);
+    }
+
+    // Id of the lexeme, interning it if there is room; -1 when it is too long or the pool is full.
+    public int intern(char[] source, int offset, int length) {
+        if (length > MAX_LENGTH) return NONE;
+        int hash = hash(source, offset, length);
+        int mask = slots.length - 1;
+        int i = spread(hash) & mask;
+        for (; slots[i] != 0; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (entryHashes[id] == hash && entryLengths[id] == length
+                    && Arrays.equals(chars, entryStarts[id], entryStarts[id] + length, source, offset, offset + length)) {
+                return id;
+            }
+        }
+        if (entries == maxEntries) return NONE;
+
+        if (entries == entryStarts.length) {
+            int capacity = entries * 2;
+            entryStarts = Arrays.copyOf(entryStarts, capacity);
+            entryLengths = Arrays.copyOf(entryLengths, capacity);
+            entryHashes = Arrays.copyOf(entryHashes, capacity);
+            entryStrings = Arrays.copyOf(entryStrings, capacity);
+        }
+        int id = entries++;
+        entryStarts[id] = append(source, offset, length);
+        entryLengths[id] = length;
+        entryHashes[id] = hash;
+        if (entries * 2 > slots.length) {
+            rehash(slots.length * 2);
+        } else {
+            slots[i] = id + 1;
+        }
+        return id;
+    }
+
+    public int append(char[] source, int offset, int length) {
+        if (this.length + length > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, this.length + length));
+        }
+        System.arraycopy(source, offset, chars, this.length, length);
+        int start = this.length;
+        this.length += length;
+        return start;
+    }
+
+    // The canonical String of the entry stored at start, if start is one; a new String otherwise.
+    public String string(int start, int length) {
+        if (length <= MAX_LENGTH) {
+            int id = Arrays.binarySearch(entryStarts, 0, entries, start);
+            if (id >= 0 && entryLengths[id] == length) return string(id);
+        }
+        return new String(chars, start, length);
+    }
+
+    public String string(int id) {
+        String text = entryStrings[id];
+        if (text == null) {
+            text = new String(chars, entryStarts[id], entryLengths[id]);
+            entryStrings[id] = text;
+        }
+        return text;
+    }
+
+    public int start(int id) {
+        return entryStarts[id];
+    }
+
+    public int length(int id) {
+        return entryLengths[id];
+    }
+
+    public int hash(int id) {
+        return entryHashes[id];
+    }
+
+    // Backing array of every start handed out; valid until the next add, intern or append.
+    char[] chars() {
+        return chars;
+    }
+
+    public int charCount() {
+        return length;
+    }
+
+    public int size() {
+        return entries;
+    }
+
+    public void clear() {
+        length = 0;
+        Arrays.fill(entryStrings, 0, entries, null);
+        entries = 0;
+        Arrays.fill(slots, 0);
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < entries; id++) {
+            int i = spread(entryHashes[id]) & mask;
+            while (slots[i] != 0) i = (i + 1) & mask;
+            slots[i] = id + 1;
+        }
+    }
+
+    static int hash(char[] source, int offset, int length) {
+        int hash = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash = 31 * hash + source[i];
+        }
+        return hash;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
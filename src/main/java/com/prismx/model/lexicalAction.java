@@ -2,122 +2,459 @@ package com.prismx.model;
 
 import java.io.*;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class lexicalAction {
-    private BufferedReader br;
-    private HashMap<Integer, String> lineDict;
-    private HashMap<Integer, ArrayList<String>> lexemeDict;
-    private HashMap<Integer, ArrayList<String>> tokenDict;
-    private HashMap<Integer, ArrayList<String>> errors;
+    private sourceFile source;
+    private Reader reader;
+    private tokenStream tokens;
     private StringBuilder content;
+    private int parallelism = 1;
+    private int minChunkLines = 16384;
+    private tracer trace = tracer.NONE;
+    private phaseMetrics metrics = new phaseMetrics("lexical");
 
-    public lexicalAction(File file) throws FileNotFoundException {
-        this.br = new BufferedReader(new FileReader(file));
-        this.lineDict = new HashMap<>();
-        this.lexemeDict = new HashMap<>();
-        this.tokenDict = new HashMap<>();
+    public lexicalAction(File file) throws IOException {
+        this(new sourceFile(file));
+    }
+
+    public lexicalAction(sourceFile source) {
+        this.source = source;
+        this.reader = source.reader();
+        this.tokens = new tokenStream();
         this.content = new StringBuilder();
-        this.errors = new HashMap<>();
+    }
+
+    // Lines never share lexer state, so above one chunk's worth of lines the file is cut at line
+    // boundaries and lexed on a ForkJoinPool; the chunks are stitched back together in line order.
+    public void setParallelism(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    public void setMinChunkLines(int minChunkLines) {
+        this.minChunkLines = Math.max(1, minChunkLines);
+    }
+
+    public void setTracer(tracer trace) {
+        this.trace = trace;
     }
 
     public void lexicalAnalysis() throws IOException {
-        cleaner();
-        for(Map.Entry<Integer, String> entry : lineDict.entrySet()) {
-            int key=entry.getKey();
-            ArrayList<String> lexemes=lexemeSplit(entry.getValue());
-            ArrayList<String> toTokenDict=new ArrayList<>();
-
-
-            for (String lexeme : lexemes) {
-                if (!lexeme.isEmpty()) {
-                    toTokenDict.add(tokenizer(lexeme));
-                    //System.out.print(tokenizer(lexeme)+" "+lexeme);//debugging
-                    //System.out.print(" " + lexeme + "\n");//for debugging
-                }
+        lexicalAnalysis(analysisProgress.NONE);
+    }
+
+    // Throws CancellationException once progress reports the run as cancelled.
+    public void lexicalAnalysis(analysisProgress progress) throws IOException {
+        metrics = new phaseMetrics("lexical");
+        metrics.start();
+        int lineCount = source.lineCount();
+        lineProgress lines = new lineProgress(progress, lineCount);
+        if (parallelism > 1 && lineCount >= 2 * minChunkLines) {
+            lexParallel(lineCount, lines);
+        } else {
+            tokens.ensureCapacity(expectedTokens(lineCount, source.byteSize()), lineCount);
+            lexInto(tokens, reader, 8192, 1, lines);
+        }
+        progress.linesDone(lineCount, lineCount);
+
+        int traceLevel = trace.level(diagnostic.LEXICAL);
+        if (traceLevel > tracer.OFF) trace.trace(diagnostic.LEXICAL, "--- LEXICAL DEBUG MODE ---");
+        for (int i = 0; i < tokens.lineCount(); i++) {
+            int rowStart = content.length();
+            content.append("[" + tokens.lineNumber(i) + "] ");
+            for (int t = tokens.firstToken(i); t < tokens.endToken(i); t++) {
+                content.append(tokenStream.kindName(tokens.kind(t))).append(' ');
             }
-            tokenDict.put(key, toTokenDict);
-            lexemeDict.put(key, lexemes);
-            //System.out.println();//debuggin
-            ArrayList<String> currentLine = tokenDict.get(key);
-            if(currentLine.contains("<error>")) {
-                errors.put(key, currentLine);
+            if (traceLevel >= tracer.ALL || (traceLevel >= tracer.ERRORS && tokens.lineHasKind(i, tokenStream.ERROR))) {
+                trace.trace(diagnostic.LEXICAL, content.substring(rowStart));
             }
+            content.append("\n");
+        }
+        metrics.setLines(tokens.lineCount());
+        metrics.countTokens(tokens);
+        metrics.finish();
+    }
 
+    // Lines counted across every chunk of one run and reported in analysisProgress.INTERVAL steps.
+    private static final class lineProgress {
+        static final lineProgress NONE = new lineProgress(analysisProgress.NONE, 0);
+
+        private final analysisProgress progress;
+        private final long total;
+        private final AtomicLong done = new AtomicLong();
+
+        lineProgress(analysisProgress progress, long total) {
+            this.progress = progress;
+            this.total = total;
+        }
+
+        void advance(int lines) {
+            progress.checkpoint(done.addAndGet(lines), total);
         }
+    }
 
-        System.out.println("--- LEXICAL DEBUG MODE ---");
-        for (Map.Entry<Integer, ArrayList<String>> entry : tokenDict.entrySet()) {
-            System.out.print("[" + entry.getKey() + "] ");
-            content.append("[" + entry.getKey() + "] ");
+    private static void lexInto(tokenStream target, Reader input, int windowSize, int firstLine, lineProgress progress) throws IOException {
+        streamLexer lexer = new streamLexer(input, windowSize, firstLine);
+        lexer.lex(new streamLexer.tokenConsumer() {
+            private int reported = firstLine - 1;
 
-            for (String token : entry.getValue()) {
-                System.out.print(token + " ");
-                content.append(token+" ");
+            @Override
+            public void token(byte kind, int line, long start, int length) {
+                target.addToken(kind, line, lexer.lexemeBuffer(), lexer.lexemeOffset(), length);
             }
-            System.out.println();
-            content.append("\n");
+
+            @Override
+            public void endLine(int line) {
+                target.endLine(line);
+                if (line - reported >= analysisProgress.INTERVAL) {
+                    progress.advance(line - reported);
+                    reported = line;
+                }
+            }
+        });
+    }
+
+    // Tokens of a single line, numbered as line 1; an empty line gives an empty stream like cleaner() skipped it.
+    static tokenStream lexLine(String text) {
+        tokenStream line = new tokenStream(8, 1);
+        try {
+            lexInto(line, new StringReader(text), text.length() + 1, 1, lineProgress.NONE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return line;
+    }
+
+    // A few tokens a line, as in 'int x = 5;', but at most one per four bytes, so a file of blank
+    // lines or of long literals does not reserve arrays it never fills; addToken() grows the rest.
+    static int expectedTokens(int lines, long bytes) {
+        return (int) Math.min(4L * lines, bytes / 4);
+    }
+
+    private void lexParallel(int lineCount, lineProgress progress) {
+        int chunkLines = Math.max(minChunkLines, lineCount / (parallelism * 4));
+        int chunks = (lineCount + chunkLines - 1) / chunkLines;
+        tokenStream[] parts = new tokenStream[chunks];
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.invoke(new chunkTask(source, parts, 0, chunks, chunkLines, lineCount, progress));
+        } finally {
+            pool.shutdown();
+        }
+        int tokenCount = tokens.tokenCount();
+        int lines = tokens.lineCount();
+        for (tokenStream part : parts) {
+            tokenCount += part.tokenCount();
+            lines += part.lineCount();
+        }
+        tokens.ensureCapacity(tokenCount, lines);
+        for (tokenStream part : parts) {
+            tokens.append(part);
+        }
+    }
+
+    // Serializable only because RecursiveAction is; nothing ever serializes it
+    private static class chunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient sourceFile source;
+        private final transient tokenStream[] parts;
+        private final int from;
+        private final int to;
+        private final int chunkLines;
+        private final int lineCount;
+        private final transient lineProgress progress;
+
+        chunkTask(sourceFile source, tokenStream[] parts, int from, int to, int chunkLines, int lineCount, lineProgress progress) {
+            this.source = source;
+            this.parts = parts;
+            this.from = from;
+            this.to = to;
+            this.chunkLines = chunkLines;
+            this.lineCount = lineCount;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new chunkTask(source, parts, from, middle, chunkLines, lineCount, progress),
+                        new chunkTask(source, parts, middle, to, chunkLines, lineCount, progress));
+                return;
+            }
+            int firstLine = from * chunkLines + 1;
+            int lastLine = Math.min(lineCount, firstLine + chunkLines - 1);
+            int bytes = source.lineStart(lastLine) - source.lineStart(firstLine);
+            tokenStream part = new tokenStream(expectedTokens(lastLine - firstLine + 1, bytes), lastLine - firstLine + 1);
+            try {
+                lexInto(part, source.reader(firstLine, lastLine), 8192, firstLine, progress);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            parts[from] = part;
         }
     }
 
+    // Streaming mode: tokens go straight to the consumer and no tokenStream is built.
+    public void lexicalAnalysis(streamLexer.tokenConsumer consumer) throws IOException {
+        new streamLexer(reader).lex(consumer);
+    }
+
     public String getContent() {
         return content.toString();
     }
-    public HashMap<Integer, ArrayList<String>> getTokenDict() {
-        return tokenDict;
+
+    public phaseMetrics getMetrics() {
+        return metrics;
     }
-    public HashMap<Integer, ArrayList<String>> getLexicalDict() {
-        return lexemeDict;
+
+    public tokenStream getTokenStream() {
+        return tokens;
     }
 
     public String getErrors() {
         StringBuilder errorContent = new StringBuilder();
-        for (Map.Entry<Integer, ArrayList<String>> entry : errors.entrySet()) {
-            errorContent.append("Line "+entry.getKey()+": "+entry.getValue()+"\n");
+        for (int i = 0; i < tokens.lineCount(); i++) {
+            if (!tokens.lineHasKind(i, tokenStream.ERROR)) continue;
+
+            errorContent.append("Line " + tokens.lineNumber(i) + ": " + kindList(tokens, i) + "\n");
         }
         return errorContent.toString();
     }
 
-    public void cleaner() throws IOException {
-        String line;
-        for(int i=1;(line=br.readLine())!=null;i++){
-            if(!line.isEmpty()){
-                lineDict.put(i,line);
-                System.out.println(lineDict.get(i));//debugging
-            }
+    // "[<data_type>, <error>]" -- how getErrors() lists a line
+    static String kindList(tokenStream tokens, int line) {
+        StringBuilder kinds = new StringBuilder("[");
+        for (int t = tokens.firstToken(line); t < tokens.endToken(line); t++) {
+            if (t > tokens.firstToken(line)) kinds.append(", ");
+            kinds.append(tokenStream.kindName(tokens.kind(t)));
+        }
+        return kinds.append(']').toString();
+    }
+
+    // What the viewer shows on a line with invalid tokens: the first of them.
+    static String invalidSymbol(tokenStream tokens, int line) {
+        for (int t = tokens.firstToken(line); t < tokens.endToken(line); t++) {
+            if (tokens.kind(t) == tokenStream.ERROR) return "Invalid symbol '" + tokens.lexeme(t) + "'";
         }
+        return null;
     }
 
     public boolean lexicalSuccessStatus(){
-        if(!errors.isEmpty()){
-            return false;
+        for (int i = 0; i < tokens.lineCount(); i++) {
+            if (tokens.lineHasKind(i, tokenStream.ERROR)) {
+                return false;
+            }
         }
         return true;
     }
 
     public static String tokenizer(String lexeme){
-        if(lexeme.matches("byte|short|int|long|double|float|char|String|boolean")){
-            return "<data_type>";
+        return tokenStream.kindName(tokenKind(lexeme, 0, lexeme.length()));
+    }
+
+    // Single pass over src[start, end) that accepts exactly what the old regex chain accepted:
+    //   byte|short|int|long|double|float|char|String|boolean     -> <data_type>
+    //   "=" / ";"                                                -> <assignment_operator> / <delimiter>
+    //   "{" / "}"                                                -> <open_brace> / <close_brace>
+    //   "+" "-" "*" "/" "%" / "(" / ")"                          -> <operator> / <open_paren> / <close_paren>
+    //   ".*" | '[^']' | true | false | [-+]?\d*\.?\d+([eE][-+]?\d+)?[fFdDlL]?  -> <value>
+    //   [a-zA-Z_][a-zA-Z0-9_]*                                   -> <identifier>
+    public static byte tokenKind(CharSequence src, int start, int end){
+        int length = end - start;
+        if (length <= 0) {
+            return tokenStream.ERROR;
+        }
+        char first = src.charAt(start);
+        if (length == 1) {
+            if (first == '=') return tokenStream.ASSIGNMENT_OPERATOR;
+            if (first == ';') return tokenStream.DELIMITER;
+            if (first == '{') return tokenStream.OPEN_BRACE;
+            if (first == '}') return tokenStream.CLOSE_BRACE;
+            if (first == '(') return tokenStream.OPEN_PAREN;
+            if (first == ')') return tokenStream.CLOSE_PAREN;
+            if (isOperator(first)) return tokenStream.OPERATOR;
+        }
+        if (first == '"') {
+            return isStringLiteral(src, start, end) ? tokenStream.VALUE : tokenStream.ERROR;
+        }
+        if (first == '\'') {
+            return isCharLiteral(src, start, end) ? tokenStream.VALUE : tokenStream.ERROR;
         }
-        else if(lexeme.equals("=")){
-            return "<assignment_operator>";
+        if (first == '-' || first == '+' || first == '.' || isDigit(first)) {
+            return isNumberLiteral(src, start, end) ? tokenStream.VALUE : tokenStream.ERROR;
         }
-        else if(lexeme.equals(";")){
-            return "<delimiter>";
+        if (!isIdentifierStart(first)) {
+            return tokenStream.ERROR;
         }
-        else if (lexeme.matches("\".*\"|'[^']'|true|false|[-+]?\\d*\\.?\\d+([eE][-+]?\\d+)?[fFdDlL]?")) {
-            return "<value>";
+        for (int i = start + 1; i < end; i++) {
+            if (!isIdentifierPart(src.charAt(i))) {
+                return tokenStream.ERROR;
+            }
+        }
+        if (isDataType(src, start, length)) {
+            return tokenStream.DATA_TYPE;
         }
-        else if(lexeme.matches("[a-zA-Z_][a-zA-Z0-9_]*")){
-            return "<identifier>";
+        if (regionEquals(src, start, length, "true") || regionEquals(src, start, length, "false")) {
+            return tokenStream.VALUE;
         }
-        return "<error>";
+        return tokenStream.IDENTIFIER;
+    }
+
+    private static boolean isDataType(CharSequence src, int start, int length) {
+        switch (src.charAt(start)) {
+            case 'b': return regionEquals(src, start, length, "byte") || regionEquals(src, start, length, "boolean");
+            case 's': return regionEquals(src, start, length, "short");
+            case 'i': return regionEquals(src, start, length, "int");
+            case 'l': return regionEquals(src, start, length, "long");
+            case 'd': return regionEquals(src, start, length, "double");
+            case 'f': return regionEquals(src, start, length, "float");
+            case 'c': return regionEquals(src, start, length, "char");
+            case 'S': return regionEquals(src, start, length, "String");
+            default: return false;
+        }
+    }
+
+    private static boolean regionEquals(CharSequence src, int start, int length, String word) {
+        if (length != word.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (src.charAt(start + i) != word.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ".*" -- '.' rejects the regex line terminators, everything else (including '"') may sit in between
+    static boolean isStringLiteral(CharSequence src, int start, int end) {
+        if (end - start < 2 || src.charAt(end - 1) != '"') {
+            return false;
+        }
+        for (int i = start + 1; i < end - 1; i++) {
+            char c = src.charAt(i);
+            if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // '[^']' -- the class matches one code point, so a surrogate pair counts as a single character
+    static boolean isCharLiteral(CharSequence src, int start, int end) {
+        int length = end - start;
+        if (src.charAt(end - 1) != '\'') {
+            return false;
+        }
+        if (length == 3) {
+            return src.charAt(start + 1) != '\'';
+        }
+        return length == 4 && Character.isHighSurrogate(src.charAt(start + 1)) && Character.isLowSurrogate(src.charAt(start + 2));
+    }
+
+    private static boolean isNumberLiteral(CharSequence src, int start, int end) {
+        int i = start;
+        char c = src.charAt(i);
+        if (c == '-' || c == '+') {
+            i++;
+        }
+        int intDigits = 0;
+        while (i < end && isDigit(src.charAt(i))) {
+            i++;
+            intDigits++;
+        }
+        if (i < end && src.charAt(i) == '.') {
+            i++;
+            int fractionDigits = 0;
+            while (i < end && isDigit(src.charAt(i))) {
+                i++;
+                fractionDigits++;
+            }
+            if (fractionDigits == 0) return false;
+        }
+        else if (intDigits == 0) {
+            return false;
+        }
+        if (i < end && (src.charAt(i) == 'e' || src.charAt(i) == 'E')) {
+            i++;
+            if (i < end && (src.charAt(i) == '-' || src.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            while (i < end && isDigit(src.charAt(i))) {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) return false;
+        }
+        if (i < end) {
+            switch (src.charAt(i)) {
+                case 'f': case 'F': case 'd': case 'D': case 'l': case 'L':
+                    i++;
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return i == end;
+    }
+
+    // Characters that always end a lexeme and are a token of their own. '+' and '-' are not among
+    // them: see isSign().
+    static boolean isBreak(char c) {
+        return c == '=' || c == ';' || c == '{' || c == '}' || c == '(' || c == ')' || c == '*' || c == '/' || c == '%';
+    }
+
+    static boolean isOperator(char c) {
+        return c == '+' || c == '-' || c == '*' || c == '/' || c == '%';
+    }
+
+    // '+' and '-' are operators of their own after an operand (a - 5), but start a signed literal
+    // where an operand is expected (x = -5) and stay inside an exponent (1e-5). A sign that
+    // starts a lexeme is kept only when a digit or '.' follows it.
+    static boolean isSign(char c) {
+        return c == '+' || c == '-';
+    }
+
+    // Whether a '+' or '-' right after a token of this kind is a binary operator.
+    static boolean endsOperand(byte kind) {
+        return kind == tokenStream.IDENTIFIER || kind == tokenStream.VALUE || kind == tokenStream.CLOSE_PAREN || kind == tokenStream.ERROR;
+    }
+
+    // Whether a sign after word[0, length) continues it as the sign of an exponent.
+    static boolean isExponentSign(char first, char last) {
+        return (last == 'e' || last == 'E') && (isDigit(first) || first == '.' || isSign(first));
+    }
+
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isIdentifierStart(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return isIdentifierStart(c) || isDigit(c);
     }
 
     public static ArrayList<String> lexemeSplit(String input) {
+        return lexemeSplit(input, null);
+    }
+
+    // With a pool, each lexeme is resolved through it straight from the line's chars, so repeated
+    // lexemes across calls come back as the same String instead of a new trimmed copy each. Only
+    // interned lexemes are kept there; the rest come back as plain Strings, so a pool reused for
+    // any number of lines stays within its bound.
+    public static ArrayList<String> lexemeSplit(String input, lexemePool pool) {
         ArrayList<String> lexemes = new ArrayList<>();
         StringBuilder currentLexeme = new StringBuilder();
+        char[] scratch = pool == null ? null : new char[Math.max(16, input.length())];
         boolean inString = false;
         char stringDelimiter = '"';
 
@@ -127,39 +464,78 @@ public class lexicalAction {
                 currentLexeme.append(c);
                 if (c == stringDelimiter) {
                     inString = false;
-                    lexemes.add(currentLexeme.toString().trim());
+                    lexemes.add(lexeme(currentLexeme, pool, scratch));
                     currentLexeme.setLength(0);
                 }
             } else {
                 if (c == '"' || c == '\'') {
                     if (currentLexeme.length() > 0) {
-                        lexemes.add(currentLexeme.toString().trim());
+                        lexemes.add(lexeme(currentLexeme, pool, scratch));
                         currentLexeme.setLength(0);
                     }
                     inString = true;
                     stringDelimiter = c;
                     currentLexeme.append(c);
-                } else if (c == '=' || c == ';') {
+                } else if (isBreak(c)) {
                     if (currentLexeme.length() > 0) {
-                        lexemes.add(currentLexeme.toString().trim());
+                        lexemes.add(lexeme(currentLexeme, pool, scratch));
                         currentLexeme.setLength(0);
                     }
-                    lexemes.add(String.valueOf(c));
+                    lexemes.add(single(c, pool, scratch));
                 } else if (Character.isWhitespace(c)) {
                     if (currentLexeme.length() > 0) {
-                        lexemes.add(currentLexeme.toString().trim());
+                        lexemes.add(lexeme(currentLexeme, pool, scratch));
+                        currentLexeme.setLength(0);
+                    }
+                } else if (isSign(c) && !(currentLexeme.length() > 0
+                        && isExponentSign(currentLexeme.charAt(0), currentLexeme.charAt(currentLexeme.length() - 1)))) {
+                    // same rules as streamLexer
+                    if (currentLexeme.length() > 0) {
+                        lexemes.add(lexeme(currentLexeme, pool, scratch));
                         currentLexeme.setLength(0);
                     }
+                    String last = lexemes.isEmpty() ? null : lexemes.get(lexemes.size() - 1);
+                    if (last != null && endsOperand(tokenKind(last, 0, last.length()))) {
+                        lexemes.add(single(c, pool, scratch));
+                    } else {
+                        currentLexeme.append(c);
+                    }
                 } else {
+                    if (currentLexeme.length() == 1 && isSign(currentLexeme.charAt(0)) && c != '.' && !isDigit(c)) {
+                        lexemes.add(lexeme(currentLexeme, pool, scratch));
+                        currentLexeme.setLength(0);
+                    }
                     currentLexeme.append(c);
                 }
             }
         }
 
         if (currentLexeme.length() > 0) {
-            lexemes.add(currentLexeme.toString().trim());
+            lexemes.add(lexeme(currentLexeme, pool, scratch));
         }
         return lexemes;
     }
 
+    private static String single(char c, lexemePool pool, char[] scratch) {
+        if (pool == null) return String.valueOf(c);
+        scratch[0] = c;
+        return pooled(pool, scratch, 1);
+    }
+
+    // The lexeme trimmed like String.trim()
+    private static String lexeme(StringBuilder text, lexemePool pool, char[] scratch) {
+        if (pool == null) return text.toString().trim();
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') start++;
+        while (end > start && text.charAt(end - 1) <= ' ') end--;
+        text.getChars(start, end, scratch, 0);
+        return pooled(pool, scratch, end - start);
+    }
+
+    private static String pooled(lexemePool pool, char[] scratch, int length) {
+        int id = pool.intern(scratch, 0, length);
+        return id >= 0 ? pool.string(id) : new String(scratch, 0, length);
+    }
+
 }
@@ -0,0 +1,79 @@
+package com.prismx.model;
+
+import java.util.Arrays;
+
+// Line number -> value, kept sorted by line. The phases report lines in order, so put() is
+// normally an append; lookups are a binary search and iteration is by position, so nothing is
+// boxed or hashed and sparse line numbers cost nothing extra.
+public class lineMap<V> {
+    private int[] lines;
+    private Object[] values;
+    private int size;
+
+    public lineMap() {
+        this(16);
+    }
+
+    public lineMap(int expectedSize) {
+        this.lines = new int[Math.max(4, expectedSize)];
+        this.values = new Object[Math.max(4, expectedSize)];
+    }
+
+    public void put(int line, V value) {
+        if (size > 0 && lines[size - 1] >= line) {
+            int index = Arrays.binarySearch(lines, 0, size, line);
+            if (index >= 0) {
+                values[index] = value;
+                return;
+            }
+            insertAt(-index - 1, line, value);
+            return;
+        }
+        insertAt(size, line, value);
+    }
+
+    private void insertAt(int index, int line, V value) {
+        if (size == lines.length) {
+            lines = Arrays.copyOf(lines, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(lines, index, lines, index + 1, size - index);
+        System.arraycopy(values, index, values, index + 1, size - index);
+        lines[index] = line;
+        values[index] = value;
+        size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int line) {
+        int index = Arrays.binarySearch(lines, 0, size, line);
+        return index >= 0 ? (V) values[index] : null;
+    }
+
+    public boolean containsLine(int line) {
+        return Arrays.binarySearch(lines, 0, size, line) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+    }
+
+    // Positional access, in ascending line order.
+    public int lineAt(int index) {
+        return lines[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V valueAt(int index) {
+        return (V) values[index];
+    }
+}
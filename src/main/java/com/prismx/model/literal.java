@@ -0,0 +1,97 @@
+package com.prismx.model;
+
+// A value lexeme classified in one left-to-right pass. The type is what the old inferType()
+// regexes produced; int and long literals also carry their parsed value so range checks are
+// plain comparisons. fitsLong is false once the digits overflow a long.
+public final class literal {
+    public final dataType type;
+    public final long value;
+    public final boolean fitsLong;
+
+    private literal(dataType type, long value, boolean fitsLong) {
+        this.type = type;
+        this.value = value;
+        this.fitsLong = fitsLong;
+    }
+
+    private static final literal STRING = new literal(dataType.STRING, 0, true);
+    private static final literal CHAR = new literal(dataType.CHAR, 0, true);
+    private static final literal BOOLEAN = new literal(dataType.BOOLEAN, 0, true);
+    private static final literal FLOAT = new literal(dataType.FLOAT, 0, true);
+    private static final literal DOUBLE = new literal(dataType.DOUBLE, 0, true);
+    private static final literal UNKNOWN = new literal(dataType.UNKNOWN, 0, true);
+
+    public boolean fitsInt() {
+        return fitsLong && value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+    }
+
+    public static literal scan(CharSequence value) {
+        int end = value.length();
+        if (end == 0) return UNKNOWN;
+
+        char first = value.charAt(0);
+        if (first == '"') return lexicalAction.isStringLiteral(value, 0, end) ? STRING : fallback(value);
+        if (first == '\'') return lexicalAction.isCharLiteral(value, 0, end) ? CHAR : fallback(value);
+        if (first == 't' || first == 'f') {
+            if ("true".contentEquals(value) || "false".contentEquals(value)) return BOOLEAN;
+            return fallback(value);
+        }
+
+        // [-+]? digits -- accumulated negatively so Long.MIN_VALUE still fits
+        int i = 0;
+        boolean negative = first == '-';
+        if (first == '-' || first == '+') i++;
+        int intStart = i;
+        long accumulated = 0;
+        boolean overflow = false;
+        while (i < end && lexicalAction.isDigit(value.charAt(i))) {
+            int digit = value.charAt(i++) - '0';
+            if (accumulated < Long.MIN_VALUE / 10 || accumulated * 10 < Long.MIN_VALUE + digit) {
+                overflow = true;
+            } else {
+                accumulated = accumulated * 10 - digit;
+            }
+        }
+        int intDigits = i - intStart;
+        boolean integerSign = first != '+';
+
+        // -?\d+ and -?\d+[lL]
+        if (intDigits > 0 && integerSign) {
+            if (i == end || (i == end - 1 && (value.charAt(i) == 'l' || value.charAt(i) == 'L'))) {
+                if (!negative && accumulated == Long.MIN_VALUE) overflow = true;
+                long parsed = negative ? accumulated : -accumulated;
+                return new literal(i == end ? dataType.INT : dataType.LONG, overflow ? 0 : parsed, !overflow);
+            }
+        }
+
+        // [-+]?\d*\.?\d+([eE][-+]?\d+)?[fFdD]
+        if (i < end && value.charAt(i) == '.') {
+            int fractionStart = ++i;
+            while (i < end && lexicalAction.isDigit(value.charAt(i))) i++;
+            if (i == fractionStart) return fallback(value);
+        } else if (intDigits == 0) {
+            return fallback(value);
+        }
+        if (i < end && (value.charAt(i) == 'e' || value.charAt(i) == 'E')) {
+            i++;
+            if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) i++;
+            int exponentStart = i;
+            while (i < end && lexicalAction.isDigit(value.charAt(i))) i++;
+            if (i == exponentStart) return fallback(value);
+        }
+        if (i == end - 1) {
+            char suffix = value.charAt(i);
+            if (suffix == 'f' || suffix == 'F') return FLOAT;
+            if (suffix == 'd' || suffix == 'D') return DOUBLE;
+        }
+        return fallback(value);
+    }
+
+    // Anything else with a '.' in it was treated as a double (e.g. 3.14).
+    private static literal fallback(CharSequence value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == '.') return DOUBLE;
+        }
+        return UNKNOWN;
+    }
+}
@@ -0,0 +1,53 @@
+package com.prismx.model;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+// Process-wide totals per phase, in the order the phases first ran. Each total is registered
+// with the platform MBean server as com.prismx:type=PhaseMetrics,name=<phase> the first time its
+// phase finishes, so JConsole or any JMX client can watch them.
+public final class metricsRegistry {
+    private static final LinkedHashMap<String, phaseMetrics> TOTALS = new LinkedHashMap<>();
+
+    private metricsRegistry() {}
+
+    static void record(phaseMetrics run) {
+        phaseMetrics total;
+        synchronized (TOTALS) {
+            total = TOTALS.computeIfAbsent(run.getPhase(), metricsRegistry::register);
+        }
+        total.add(run);
+    }
+
+    private static phaseMetrics register(String phase) {
+        phaseMetrics total = new phaseMetrics(phase);
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(total, new ObjectName("com.prismx:type=PhaseMetrics,name=" + phase));
+        } catch (JMException e) {
+            // JMX is only a view of the totals; they are still kept and dumped without it
+        }
+        return total;
+    }
+
+    public static List<phaseMetrics> totals() {
+        synchronized (TOTALS) {
+            return new ArrayList<>(TOTALS.values());
+        }
+    }
+
+    // {"phases":[...]} with one phaseMetrics.appendJson() object per phase.
+    public static String toJson() {
+        StringBuilder json = new StringBuilder("{\"phases\":[");
+        List<phaseMetrics> totals = totals();
+        for (int i = 0; i < totals.size(); i++) {
+            if (i > 0) json.append(',');
+            totals.get(i).appendJson(json);
+        }
+        return json.append("]}").toString();
+    }
+}
@@ -0,0 +1,38 @@
+package com.prismx.model;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// JFR event for one phase run; its duration is the phase's wall time.
+@Name("com.prismx.Phase")
+@Label("Analysis Phase")
+@Category("Prismx")
+@Description("One run of a lexical, syntax, semantic or single-pass analysis")
+@StackTrace(false)
+final class phaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Lines")
+    long lines;
+
+    @Label("Tokens")
+    long tokens;
+
+    @Label("Errors")
+    long errors;
+
+    @Label("CPU Time")
+    @Timespan
+    long cpuTime;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocated;
+}
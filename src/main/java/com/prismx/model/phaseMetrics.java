@@ -0,0 +1,233 @@
+package com.prismx.model;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Counters for one phase run, or the running total of many (metricsRegistry). A run is measured
+// on the thread that calls start() and finish(): CPU time and allocated bytes come from that
+// thread's ThreadMXBean counters, so work a phase hands to other threads (parallel lexing) shows
+// up in wall time only. finish() also commits a JFR phaseEvent and adds the run to the registry.
+public class phaseMetrics implements phaseMetricsMXBean {
+    public static final String INVALID_TOKEN = "INVALID_TOKEN";
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final diagnosticCode[] CODES = diagnosticCode.values();
+
+    private final String phase;
+    private long runs;
+    private long lines;
+    private final long[] tokensByKind = new long[tokenStream.KIND_COUNT];
+    private final long[] errorsByCode = new long[CODES.length];
+    private long wallNanos;
+    private long cpuNanos;
+    private long allocatedBytes;
+
+    private phaseEvent event;
+    private long startWall;
+    private long startCpu;
+    private long startAllocated;
+
+    public phaseMetrics(String phase) {
+        this.phase = phase;
+    }
+
+    void start() {
+        event = new phaseEvent();
+        event.begin();
+        startWall = System.nanoTime();
+        startCpu = threadCpuTime();
+        startAllocated = threadAllocatedBytes();
+    }
+
+    void finish() {
+        long wall = System.nanoTime() - startWall;
+        long cpu = threadCpuTime() - startCpu;
+        long allocated = threadAllocatedBytes() - startAllocated;
+        event.end();
+        synchronized (this) {
+            runs = 1;
+            wallNanos = wall;
+            cpuNanos = cpu;
+            allocatedBytes = allocated;
+        }
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.lines = lines;
+            event.tokens = getTokens();
+            event.errors = getErrors();
+            event.cpuTime = cpu;
+            event.allocated = allocated;
+            event.commit();
+        }
+        event = null;
+        metricsRegistry.record(this);
+    }
+
+    private static long threadCpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? Math.max(0, THREADS.getCurrentThreadCpuTime()) : 0;
+    }
+
+    private static long threadAllocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getCurrentThreadAllocatedBytes();
+            }
+        }
+        return 0;
+    }
+
+    // The counters below are filled by the phase's own thread before finish().
+
+    void setLines(long lines) {
+        this.lines = lines;
+    }
+
+    void countTokens(tokenStream tokens) {
+        for (int t = 0; t < tokens.tokenCount(); t++) {
+            tokensByKind[tokens.kind(t)]++;
+        }
+    }
+
+    void countErrors(diagnosticSink diagnostics) {
+        for (int i = 0; i < diagnostics.size(); i++) {
+            errorsByCode[diagnostics.code(i).ordinal()]++;
+        }
+    }
+
+    synchronized void add(phaseMetrics run) {
+        synchronized (run) {
+            runs += run.runs;
+            lines += run.lines;
+            for (int k = 0; k < tokensByKind.length; k++) tokensByKind[k] += run.tokensByKind[k];
+            for (int c = 0; c < errorsByCode.length; c++) errorsByCode[c] += run.errorsByCode[c];
+            wallNanos += run.wallNanos;
+            cpuNanos += run.cpuNanos;
+            allocatedBytes += run.allocatedBytes;
+        }
+    }
+
+    @Override
+    public String getPhase() {
+        return phase;
+    }
+
+    @Override
+    public synchronized long getRuns() {
+        return runs;
+    }
+
+    @Override
+    public synchronized long getLines() {
+        return lines;
+    }
+
+    @Override
+    public synchronized long getTokens() {
+        long tokens = 0;
+        for (long count : tokensByKind) tokens += count;
+        return tokens;
+    }
+
+    // Invalid tokens from lexing plus every reported diagnostic.
+    @Override
+    public synchronized long getErrors() {
+        long errors = tokensByKind[tokenStream.ERROR];
+        for (long count : errorsByCode) errors += count;
+        return errors;
+    }
+
+    @Override
+    public synchronized long getWallNanos() {
+        return wallNanos;
+    }
+
+    @Override
+    public synchronized long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    @Override
+    public synchronized long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    // Kinds without their angle brackets ("data_type"), only those that occurred.
+    @Override
+    public synchronized Map<String, Long> getTokensByKind() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (byte k = 0; k < tokensByKind.length; k++) {
+            if (tokensByKind[k] == 0) continue;
+            String name = tokenStream.kindName(k);
+            counts.put(name.substring(1, name.length() - 1), tokensByKind[k]);
+        }
+        return counts;
+    }
+
+    // diagnosticCode names, plus INVALID_TOKEN for the tokens lexing rejected.
+    @Override
+    public synchronized Map<String, Long> getErrorsByCode() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        if (tokensByKind[tokenStream.ERROR] > 0) counts.put(INVALID_TOKEN, tokensByKind[tokenStream.ERROR]);
+        for (int c = 0; c < errorsByCode.length; c++) {
+            if (errorsByCode[c] > 0) counts.put(CODES[c].name(), errorsByCode[c]);
+        }
+        return counts;
+    }
+
+    // Short form for a status light, e.g. "42 ms".
+    public synchronized String summary() {
+        return formatMillis(wallNanos);
+    }
+
+    public synchronized String details() {
+        return "Wall: " + formatMillis(wallNanos) + "\n"
+                + "CPU: " + formatMillis(cpuNanos) + "\n"
+                + "Allocated: " + formatBytes(allocatedBytes) + "\n"
+                + "Lines: " + lines + " (" + perSecond(lines, wallNanos) + " lines/s)\n"
+                + "Tokens: " + getTokens() + "\n"
+                + "Errors: " + getErrors();
+    }
+
+    private static String formatMillis(long nanos) {
+        return nanos >= 10_000_000L ? nanos / 1_000_000L + " ms" : String.format("%.2f ms", nanos / 1e6);
+    }
+
+    private static String formatBytes(long bytes) {
+        return bytes >= 1 << 20 ? (bytes >> 20) + " MB" : (bytes >> 10) + " KB";
+    }
+
+    private static long perSecond(long count, long nanos) {
+        return nanos == 0 ? 0 : (long) (count * 1e9 / nanos);
+    }
+
+    public synchronized void appendJson(StringBuilder json) {
+        json.append("{\"phase\":\"").append(phase)
+                .append("\",\"runs\":").append(runs)
+                .append(",\"lines\":").append(lines)
+                .append(",\"tokens\":").append(getTokens())
+                .append(",\"errors\":").append(getErrors())
+                .append(",\"wallNanos\":").append(wallNanos)
+                .append(",\"cpuNanos\":").append(cpuNanos)
+                .append(",\"allocatedBytes\":").append(allocatedBytes)
+                .append(",\"tokensByKind\":");
+        appendCounts(json, getTokensByKind());
+        json.append(",\"errorsByCode\":");
+        appendCounts(json, getErrorsByCode());
+        json.append('}');
+    }
+
+    // keys are kind and code names, which never need escaping
+    private static void appendCounts(StringBuilder json, Map<String, Long> counts) {
+        json.append('{');
+        boolean first = true;
+        for (Map.Entry<String, Long> count : counts.entrySet()) {
+            if (!first) json.append(',');
+            first = false;
+            json.append('"').append(count.getKey()).append("\":").append(count.getValue());
+        }
+        json.append('}');
+    }
+}
@@ -0,0 +1,28 @@
+package com.prismx.model;
+
+import java.util.Map;
+
+// What a phase reports about its runs; the JMX view of phaseMetrics.
+public interface phaseMetricsMXBean {
+    String getPhase();
+
+    long getRuns();
+
+    long getLines();
+
+    long getTokens();
+
+    long getErrors();
+
+    long getWallNanos();
+
+    // 0 when the JVM cannot measure thread CPU time
+    long getCpuNanos();
+
+    // 0 when the JVM cannot measure thread allocation
+    long getAllocatedBytes();
+
+    Map<String, Long> getTokensByKind();
+
+    Map<String, Long> getErrorsByCode();
+}
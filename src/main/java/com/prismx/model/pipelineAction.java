@@ -0,0 +1,201 @@
+package com.prismx.model;
+
+import java.io.IOException;
+
+// Single-pass mode: every line is lexed, syntax-checked and semantically checked before the next
+// one is read, then its tokens are dropped. Only the two symbol tables, the diagnostics and the
+// open '{' lines outlive a line, so memory follows the number of symbols and errors rather than
+// the size of the file. The results match running lexicalAction, syntaxAction and
+// semanticsAction one after another; the per-line listings of the staged phases are not kept.
+public class pipelineAction {
+    private sourceFile source;
+    private diagnosticSink syntaxDiagnostics;
+    private diagnosticSink semanticDiagnostics;
+    // error lines only: the kinds on the line for getErrors(), the first bad lexeme for highlighting
+    private lineMap<String> lexicalErrors;
+    private lineMap<String> lexicalErrorLines;
+    private int lineCount;
+    private long tokenCount;
+    private tracer trace = tracer.NONE;
+    private phaseMetrics metrics = new phaseMetrics("single-pass");
+    private boolean recovering;
+
+    public pipelineAction(sourceFile source) {
+        this.source = source;
+        this.syntaxDiagnostics = new diagnosticSink();
+        this.semanticDiagnostics = new diagnosticSink();
+        this.lexicalErrors = new lineMap<>();
+        this.lexicalErrorLines = new lineMap<>();
+    }
+
+    public void setTracer(tracer trace) {
+        this.trace = trace;
+    }
+
+    // Same as syntaxAction.setRecovering() and semanticsAction.setRecovering() together.
+    public void setRecovering(boolean recovering) {
+        this.recovering = recovering;
+    }
+
+    public void analyze() throws IOException {
+        analyze(analysisProgress.NONE);
+    }
+
+    // Throws CancellationException once progress reports the run as cancelled.
+    public void analyze(analysisProgress progress) throws IOException {
+        syntaxDiagnostics.clear();
+        semanticDiagnostics.clear();
+        lexicalErrors = new lineMap<>();
+        lexicalErrorLines = new lineMap<>();
+        lineCount = 0;
+        tokenCount = 0;
+        metrics = new phaseMetrics("single-pass");
+        metrics.start();
+
+        int totalLines = source.lineCount();
+        tokenStream line = new tokenStream(64, 1);
+        symbolTable declaredVariables = new symbolTable();
+        symbolTable symbols = new symbolTable();
+        syntaxAction.openBlocks openBlocks = new syntaxAction.openBlocks();
+        syntaxAction.statements statements = new syntaxAction.statements();
+        expressionTree expressions = new expressionTree();
+        // recovering mode only: the syntax check semanticsAction.analyzeStatements() repeats keeps its own table
+        symbolTable semanticDeclared = new symbolTable();
+        int lexicalTrace = trace.level(diagnostic.LEXICAL);
+        int syntaxTrace = trace.level(diagnostic.SYNTAX);
+        int semanticTrace = trace.level(diagnostic.SEMANTIC);
+
+        streamLexer lexer = new streamLexer(source.reader(), 8192, 1);
+        lexer.lex(new streamLexer.tokenConsumer() {
+            private int reported;
+
+            @Override
+            public void token(byte kind, int lineNumber, long start, int length) {
+                line.addToken(kind, lineNumber, lexer.lexemeBuffer(), lexer.lexemeOffset(), length);
+            }
+
+            @Override
+            public void endLine(int lineNumber) {
+                line.endLine(lineNumber);
+                boolean lexical = checkLexical(line);
+                if (lexicalTrace >= tracer.ALL || (lexicalTrace >= tracer.ERRORS && !lexical)) {
+                    StringBuilder row = new StringBuilder("[" + lineNumber + "] ");
+                    for (int t = 0; t < line.tokenCount(); t++) {
+                        row.append(tokenStream.kindName(line.kind(t))).append(' ');
+                    }
+                    trace.trace(diagnostic.LEXICAL, row.toString());
+                }
+                int firstDiagnostic = syntaxDiagnostics.size();
+                boolean syntax;
+                if (recovering) {
+                    syntax = syntaxAction.checkStatements(line, 0, statements, declaredVariables, expressions, openBlocks, syntaxDiagnostics);
+                } else {
+                    syntax = syntaxAction.checkLine(line, 0, declaredVariables, expressions, syntaxDiagnostics);
+                    if (syntax) openBlocks.track(line, 0);
+                }
+                if (syntax) {
+                    if (syntaxTrace >= tracer.ALL) trace.trace(diagnostic.SYNTAX, "Line " + lineNumber + ": Syntax Correct");
+                } else if (syntaxTrace >= tracer.ERRORS) {
+                    for (int d = firstDiagnostic; d < syntaxDiagnostics.size(); d++) {
+                        trace.trace(diagnostic.SYNTAX, "Line " + lineNumber + " Error: " + syntaxDiagnostics.message(d));
+                    }
+                }
+                if (line.lineSize(0) > 0) {
+                    firstDiagnostic = semanticDiagnostics.size();
+                    boolean semantic = recovering
+                            ? semanticsAction.analyzeStatements(line, 0, statements, semanticDeclared, symbols, expressions, semanticDiagnostics)
+                            : semanticsAction.analyzeLine(line, 0, symbols, expressions, semanticDiagnostics);
+                    if (semantic) {
+                        if (semanticTrace >= tracer.ALL) trace.trace(diagnostic.SEMANTIC, "Line " + lineNumber + ": Semantics Correct");
+                    } else if (semanticTrace >= tracer.ERRORS) {
+                        for (int d = firstDiagnostic; d < semanticDiagnostics.size(); d++) {
+                            trace.trace(diagnostic.SEMANTIC, "Line " + lineNumber + " Error: " + semanticDiagnostics.message(d));
+                        }
+                    }
+                }
+                lineCount++;
+                tokenCount += line.tokenCount();
+                metrics.countTokens(line);
+                line.clear();
+
+                if (lineNumber - reported >= analysisProgress.INTERVAL) {
+                    progress.checkpoint(lineNumber, totalLines);
+                    reported = lineNumber;
+                }
+            }
+        });
+
+        for (int i = 0; i < openBlocks.count(); i++) {
+            syntaxAction.reportUnclosed(openBlocks.line(i), syntaxDiagnostics);
+            if (syntaxTrace >= tracer.ERRORS) {
+                trace.trace(diagnostic.SYNTAX, "Line " + openBlocks.line(i) + " Error: " + syntaxDiagnostics.message(syntaxDiagnostics.size() - 1));
+            }
+        }
+        metrics.setLines(lineCount);
+        metrics.countErrors(syntaxDiagnostics);
+        metrics.countErrors(semanticDiagnostics);
+        metrics.finish();
+        progress.linesDone(totalLines, totalLines);
+    }
+
+    // Records the line if it holds an invalid token; returns false in that case.
+    private boolean checkLexical(tokenStream line) {
+        if (!line.lineHasKind(0, tokenStream.ERROR)) return true;
+
+        int lineNumber = line.lineNumber(0);
+        lexicalErrors.put(lineNumber, lexicalAction.kindList(line, 0));
+        lexicalErrorLines.put(lineNumber, lexicalAction.invalidSymbol(line, 0));
+        return false;
+    }
+
+    public boolean lexicalSuccessStatus() {
+        return lexicalErrors.isEmpty();
+    }
+
+    // Same text as lexicalAction.getErrors()
+    public String getErrors() {
+        StringBuilder errorContent = new StringBuilder();
+        for (int i = 0; i < lexicalErrors.size(); i++) {
+            errorContent.append("Line " + lexicalErrors.lineAt(i) + ": " + lexicalErrors.valueAt(i) + "\n");
+        }
+        return errorContent.toString();
+    }
+
+    public lineMap<String> getLexicalErrorLines() {
+        return lexicalErrorLines;
+    }
+
+    public diagnosticSink getSyntaxDiagnostics() {
+        return syntaxDiagnostics;
+    }
+
+    public lineMap<String> getSyntaxErrors() {
+        return syntaxDiagnostics.errorsByLine();
+    }
+
+    public diagnosticSink getSemanticDiagnostics() {
+        return semanticDiagnostics;
+    }
+
+    public lineMap<String> getSemanticErrors() {
+        return semanticDiagnostics.errorsByLine();
+    }
+
+    // Lines that held any text; blank lines are skipped like the staged phases skip them.
+    public int lineCount() {
+        return lineCount;
+    }
+
+    public long tokenCount() {
+        return tokenCount;
+    }
+
+    public analysisResult getResult() {
+        return new analysisResult(null, lexicalErrors, lexicalErrorLines, lineCount, tokenCount, syntaxDiagnostics, semanticDiagnostics);
+    }
+
+    // All three phases together; they are interleaved line by line, so there is no split per phase.
+    public phaseMetrics getMetrics() {
+        return metrics;
+    }
+}
@@ -0,0 +1,95 @@
+package com.prismx.model;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Project mode: the top-level declarations of every file in one run, shared by the threads that
+// analyze them. Files are numbered in input order, and a name belongs to its first top-level
+// declaration by file, then by line; merge() keeps that one whichever thread gets there first,
+// so results never depend on scheduling. The rules, applied through symbolTable.setProject():
+//  - a name that no scope of a file declares resolves to its owner in another file, wherever in
+//    that file it is declared (files have no order among themselves);
+//  - a file's own top-level names must still be declared above their uses;
+//  - a top-level declaration of a name owned by another file is DECLARED_IN_OTHER_FILE.
+public class projectSymbols {
+    record declaration(int file, int line, dataType type) {
+        boolean before(declaration other) {
+            return file != other.file ? file < other.file : line < other.line;
+        }
+    }
+
+    private final List<String> fileNames;
+    private final ConcurrentHashMap<String, declaration> declarations;
+
+    public projectSymbols(List<String> fileNames) {
+        this.fileNames = List.copyOf(fileNames);
+        this.declarations = new ConcurrentHashMap<>(Math.max(16, fileNames.size() * 8));
+    }
+
+    // First step of a project run, for every file before any is analyzed; safe to call from any
+    // number of threads. recovering must match the analysis that follows, since it decides which
+    // statements count as declarations.
+    public void declareFile(sourceFile source, int file, boolean recovering) throws IOException {
+        lexicalAction lexer = new lexicalAction(source);
+        lexer.lexicalAnalysis();
+        collect(lexer.getTokenStream(), file, recovering);
+    }
+
+    // The declarations syntaxAction would accept at the top level of the file.
+    void collect(tokenStream tokens, int file, boolean recovering) {
+        symbolTable declaredVariables = new symbolTable();
+        expressionTree expressions = new expressionTree();
+        syntaxAction.statements statements = new syntaxAction.statements();
+        for (int line = 0; line < tokens.lineCount(); line++) {
+            if (tokens.lineSize(line) == 0) continue;
+            if (!recovering) {
+                collect(tokens, line, file, declaredVariables, expressions, statements.found());
+                continue;
+            }
+            statements.reset(tokens, line);
+            while (statements.next()) {
+                if (statements.errorAt() < 0) collect(statements.statement(), 0, file, declaredVariables, expressions, statements.found());
+            }
+        }
+    }
+
+    // A line (or statement) as syntaxAction.checkLine() takes it; records it if it is a valid declaration outside every block.
+    private void collect(tokenStream tokens, int line, int file, symbolTable declaredVariables, expressionTree expressions,
+                         diagnosticSink ignored) {
+        boolean topLevel = declaredVariables.scopeDepth() == 0;
+        boolean passed = syntaxAction.checkLine(tokens, line, declaredVariables, expressions, ignored);
+        ignored.clear();
+        if (passed && topLevel && tokens.lineKind(line, 0) == tokenStream.DATA_TYPE) {
+            declare(tokens.lineLexeme(line, 1),
+                    new declaration(file, tokens.lineNumber(line), dataType.of(tokens, tokens.lineToken(line, 0))));
+        }
+    }
+
+    private void declare(String name, declaration declaration) {
+        declarations.merge(name, declaration, (kept, added) -> added.before(kept) ? added : kept);
+    }
+
+    // Type of the name's owner when that is in another file than file; null otherwise.
+    dataType typeElsewhere(String name, int file) {
+        declaration owner = declarations.get(name);
+        return owner == null || owner.file == file ? null : owner.type;
+    }
+
+    declaration ownerElsewhere(String name, int file) {
+        declaration owner = declarations.get(name);
+        return owner == null || owner.file == file ? null : owner;
+    }
+
+    public String fileName(int file) {
+        return fileNames.get(file);
+    }
+
+    public int fileCount() {
+        return fileNames.size();
+    }
+
+    public int size() {
+        return declarations.size();
+    }
+}
@@ -0,0 +1,377 @@
+package com.prismx.model;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Binary form of an analysisResult: the tokens and every phase's diagnostics. The result cache
+// stores it, and write()/read() let other tools save a lexed file and load it back without lexing.
+//   header:      int "PRXR", short format version, int analyzer version, long content hash, long byte size
+//   strings:     varint count; per string: varint UTF-8 length, the bytes
+//   tokens:      varint lines, varint tokens; per line: varint line number minus the previous one,
+//                varint token count; per token: varint kind, varint string
+//   diagnostics: syntax then semantic; varint count; per diagnostic: varint line, varint column,
+//                byte phase, varint code, varint argument count, varint string per argument
+// Varints are unsigned LEB128. Every lexeme and argument is stored once in the string table and
+// referred to by index. Arguments are kept as their text, which is all the %s templates use.
+// Reading parses the (mapped) ByteBuffer in place rather than reading the file into an array
+// first, and decodes each table string once, the first time a token or diagnostic refers to it.
+// It is not zero-copy: the tokens are rebuilt into a tokenStream, which copies their chars.
+public final class resultFormat {
+    private static final int MAGIC = 0x50525852;
+    static final short VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 2 + 4 + 8 + 8;
+    private static final diagnosticCode[] CODES = diagnosticCode.values();
+
+    private resultFormat() {}
+
+    // result must have its tokens; the single pass drops them.
+    public static void write(analysisResult result, sourceFile source, Path target) throws IOException {
+        Files.write(target, encode(result, source.contentHash(), source.byteSize()));
+    }
+
+    // Whatever file the result came from. Throws IOException when file is truncated or damaged, or
+    // was written by another format or analyzer version.
+    public static analysisResult read(Path file) throws IOException {
+        analysisResult result = parse(map(file), 0, 0, false);
+        if (result == null) throw new IOException(file + ": written by another format or analyzer version");
+        return result;
+    }
+
+    // null when the result was written for other content than source's, or by another analyzer
+    // version; IOException when file is truncated or damaged.
+    public static analysisResult read(Path file, sourceFile source) throws IOException {
+        return parse(map(file), source.contentHash(), source.byteSize(), true);
+    }
+
+    static ByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    static byte[] encode(analysisResult result, long hash, long size) {
+        tokenStream tokens = result.getTokens();
+        diagnosticSink syntax = result.getSyntaxDiagnostics();
+        diagnosticSink semantic = result.getSemanticDiagnostics();
+
+        // table ids of every token and argument, in the order they are written below
+        stringIds strings = new stringIds(Math.max(64, tokens.tokenCount() / 8));
+        int[] tokenStrings = new int[tokens.tokenCount()];
+        for (int t = 0; t < tokenStrings.length; t++) {
+            tokenStrings[t] = strings.id(tokens, t);
+        }
+        int[] argumentStrings = new int[argumentCount(syntax) + argumentCount(semantic)];
+        internArguments(strings, semantic, argumentStrings, internArguments(strings, syntax, argumentStrings, 0));
+
+        writer out = new writer(HEADER_BYTES + tokens.tokenCount() * 2 + strings.size() * 8);
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+        out.putInt(analysisCache.ANALYZER_VERSION);
+        out.putLong(hash);
+        out.putLong(size);
+
+        out.putVarint(strings.size());
+        for (int id = 0; id < strings.size(); id++) {
+            byte[] utf8 = strings.string(id).getBytes(StandardCharsets.UTF_8);
+            out.putVarint(utf8.length);
+            out.put(utf8);
+        }
+
+        out.putVarint(tokens.lineCount());
+        out.putVarint(tokens.tokenCount());
+        int previousLine = 0;
+        for (int line = 0; line < tokens.lineCount(); line++) {
+            out.putVarint(tokens.lineNumber(line) - previousLine);
+            previousLine = tokens.lineNumber(line);
+            out.putVarint(tokens.lineSize(line));
+            for (int t = tokens.firstToken(line); t < tokens.endToken(line); t++) {
+                out.putVarint(tokens.kind(t));
+                out.putVarint(tokenStrings[t]);
+            }
+        }
+        int next = writeDiagnostics(out, syntax, argumentStrings, 0);
+        writeDiagnostics(out, semantic, argumentStrings, next);
+        return out.toByteArray();
+    }
+
+    private static int argumentCount(diagnosticSink diagnostics) {
+        int count = 0;
+        for (int i = 0; i < diagnostics.size(); i++) {
+            count += diagnostics.get(i).arguments().length;
+        }
+        return count;
+    }
+
+    // Stores the ids of the sink's arguments from ids[next] on; returns the index after the last.
+    private static int internArguments(stringIds strings, diagnosticSink diagnostics, int[] ids, int next) {
+        for (int i = 0; i < diagnostics.size(); i++) {
+            for (Object argument : diagnostics.get(i).arguments()) {
+                ids[next++] = strings.id(String.valueOf(argument));
+            }
+        }
+        return next;
+    }
+
+    private static int writeDiagnostics(writer out, diagnosticSink diagnostics, int[] argumentStrings, int next) {
+        out.putVarint(diagnostics.size());
+        for (int i = 0; i < diagnostics.size(); i++) {
+            diagnostic d = diagnostics.get(i);
+            out.putVarint(d.line());
+            out.putVarint(d.column());
+            out.putByte(d.phase());
+            out.putVarint(d.code().ordinal());
+            out.putVarint(d.arguments().length);
+            for (int a = 0; a < d.arguments().length; a++) {
+                out.putVarint(argumentStrings[next++]);
+            }
+        }
+        return next;
+    }
+
+    // null unless buffer holds a complete result of this format and analyzer version (and, with
+    // checkKey, for this content)
+    static analysisResult decode(ByteBuffer buffer, long hash, long size, boolean checkKey) {
+        try {
+            return parse(buffer, hash, size, checkKey);
+        } catch (IOException e) {
+            // truncated or damaged: treated like a miss
+            return null;
+        }
+    }
+
+    // null when buffer holds a result of another format or analyzer version (or, with checkKey,
+    // for other content); IOException when it is not a result at all or is cut short or damaged.
+    private static analysisResult parse(ByteBuffer buffer, long hash, long size, boolean checkKey) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) throw new IOException("Not a prism result file");
+            if (buffer.getShort() != VERSION || buffer.getInt() != analysisCache.ANALYZER_VERSION) return null;
+            long storedHash = buffer.getLong();
+            long storedSize = buffer.getLong();
+            if (checkKey && (storedHash != hash || storedSize != size)) return null;
+
+            stringTable strings = new stringTable(buffer);
+            int lineCount = count(buffer);
+            tokenStream tokens = new tokenStream(count(buffer), lineCount);
+            int lineNumber = 0;
+            for (int line = 0; line < lineCount; line++) {
+                lineNumber += getVarint(buffer);
+                int lineTokens = getVarint(buffer);
+                for (int t = 0; t < lineTokens; t++) {
+                    int kind = getVarint(buffer);
+                    if (kind >= tokenStream.KIND_COUNT) throw new IllegalArgumentException("Unknown token kind " + kind);
+                    char[] lexeme = strings.chars(getVarint(buffer));
+                    tokens.addToken((byte) kind, lineNumber, lexeme, 0, lexeme.length);
+                }
+                tokens.endLine(lineNumber);
+            }
+            diagnosticSink syntax = readDiagnostics(buffer, strings);
+            diagnosticSink semantic = readDiagnostics(buffer, strings);
+            return analysisResult.of(tokens, syntax, semantic);
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IOException("Truncated or damaged result file", e);
+        }
+    }
+
+    private static diagnosticSink readDiagnostics(ByteBuffer buffer, stringTable strings) {
+        int count = count(buffer);
+        diagnosticSink diagnostics = new diagnosticSink(count);
+        for (int i = 0; i < count; i++) {
+            int line = getVarint(buffer);
+            int column = getVarint(buffer);
+            byte phase = buffer.get();
+            diagnosticCode code = CODES[getVarint(buffer)];
+            Object[] arguments = new Object[count(buffer)];
+            for (int a = 0; a < arguments.length; a++) {
+                arguments[a] = strings.string(getVarint(buffer));
+            }
+            diagnostics.report(line, column, phase, code, arguments);
+        }
+        return diagnostics;
+    }
+
+    // A count of things that take at least a byte each, so a damaged one cannot allocate more than the data.
+    private static int count(ByteBuffer buffer) {
+        int count = getVarint(buffer);
+        if (count < 0 || count > buffer.remaining()) throw new IllegalArgumentException("Count " + count + " past the end of the data");
+        return count;
+    }
+
+    private static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IllegalArgumentException("Varint longer than 5 bytes");
+    }
+
+    // The string table being written: distinct strings get ids 0, 1, ... in the order first seen.
+    // Open addressing that probes straight from a token's chars, so a repeated lexeme costs no String.
+    private static final class stringIds {
+        private String[] strings;
+        private int[] hashes;
+        private int size;
+        private int[] slots;
+
+        stringIds(int expected) {
+            strings = new String[expected];
+            hashes = new int[expected];
+            slots = new int[Integer.highestOneBit(expected * 2 - 1) << 1];
+        }
+
+        int id(tokenStream tokens, int token) {
+            int hash = tokens.lexemeHash(token);
+            int mask = slots.length - 1;
+            int i = spread(hash) & mask;
+            for (; slots[i] != 0; i = (i + 1) & mask) {
+                int id = slots[i] - 1;
+                if (hashes[id] == hash && tokens.lexemeEquals(token, strings[id])) return id;
+            }
+            return add(tokens.lexeme(token), hash, i);
+        }
+
+        int id(String text) {
+            int hash = text.hashCode();
+            int mask = slots.length - 1;
+            int i = spread(hash) & mask;
+            for (; slots[i] != 0; i = (i + 1) & mask) {
+                int id = slots[i] - 1;
+                if (hashes[id] == hash && strings[id].equals(text)) return id;
+            }
+            return add(text, hash, i);
+        }
+
+        // slot is the empty one the probe ended at
+        private int add(String text, int hash, int slot) {
+            if (size == strings.length) {
+                strings = Arrays.copyOf(strings, size * 2);
+                hashes = Arrays.copyOf(hashes, size * 2);
+            }
+            int id = size++;
+            strings[id] = text;
+            hashes[id] = hash;
+            if (size * 2 > slots.length) {
+                slots = new int[slots.length * 2];
+                int mask = slots.length - 1;
+                for (int other = 0; other < size; other++) {
+                    int i = spread(hashes[other]) & mask;
+                    while (slots[i] != 0) i = (i + 1) & mask;
+                    slots[i] = other + 1;
+                }
+            } else {
+                slots[slot] = id + 1;
+            }
+            return id;
+        }
+
+        String string(int id) {
+            return strings[id];
+        }
+
+        int size() {
+            return size;
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    // Positions of the table's strings in the buffer; each is decoded on first use and kept.
+    private static final class stringTable {
+        private final ByteBuffer buffer;
+        private final int[] offsets;
+        private final int[] lengths;
+        private final char[][] chars;
+        private final String[] strings;
+
+        stringTable(ByteBuffer buffer) {
+            int count = count(buffer);
+            this.buffer = buffer;
+            this.offsets = new int[count];
+            this.lengths = new int[count];
+            this.chars = new char[count][];
+            this.strings = new String[count];
+            for (int id = 0; id < count; id++) {
+                lengths[id] = getVarint(buffer);
+                offsets[id] = buffer.position();
+                buffer.position(offsets[id] + lengths[id]);
+            }
+        }
+
+        String string(int id) {
+            if (strings[id] == null) {
+                byte[] utf8 = new byte[lengths[id]];
+                buffer.get(offsets[id], utf8);
+                strings[id] = new String(utf8, StandardCharsets.UTF_8);
+            }
+            return strings[id];
+        }
+
+        char[] chars(int id) {
+            if (chars[id] == null) chars[id] = string(id).toCharArray();
+            return chars[id];
+        }
+    }
+
+    // Growable big-endian byte array, like DataOutputStream but with varints and no stream under it.
+    private static final class writer {
+        private byte[] bytes;
+        private int size;
+
+        writer(int capacity) {
+            bytes = new byte[Math.max(capacity, 64)];
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+
+        void putByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void putShort(int value) {
+            putByte(value >>> 8);
+            putByte(value);
+        }
+
+        void putInt(int value) {
+            putShort(value >>> 16);
+            putShort(value);
+        }
+
+        void putLong(long value) {
+            putInt((int) (value >>> 32));
+            putInt((int) value);
+        }
+
+        void putVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7f) != 0) {
+                bytes[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        void put(byte[] data) {
+            ensure(data.length);
+            System.arraycopy(data, 0, bytes, size, data.length);
+            size += data.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
@@ -1,135 +1,355 @@
 package com.prismx.model;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Map;
-
 public class semanticsAction {
-    private HashMap<Integer, ArrayList<String>> processedTokens;
-    private HashMap<Integer, ArrayList<String>> processedLexicals;
-    private HashMap<Integer, String> errors;
+    private tokenStream tokens;
+    private diagnosticSink diagnostics;
+
+    private symbolTable symbols;
+    private tracer trace = tracer.NONE;
+    private phaseMetrics metrics = new phaseMetrics("semantic");
+    private boolean recovering;
+    private projectSymbols project;
+    private int file;
+
+    public semanticsAction(tokenStream tokens) {
+        this.tokens = tokens;
+        this.diagnostics = new diagnosticSink();
+        this.symbols = new symbolTable();
+    }
+
+    public void setTracer(tracer trace) {
+        this.trace = trace;
+    }
 
-    private HashMap<String, String> symbolTable;
+    // Recovering mode analyzes every statement that parses, see analyzeStatements().
+    public void setRecovering(boolean recovering) {
+        this.recovering = recovering;
+    }
 
-    public semanticsAction(HashMap<Integer, ArrayList<String>> processedTokens, HashMap<Integer, ArrayList<String>> processedLexicals) {
-        this.processedTokens = processedTokens;
-        this.processedLexicals = processedLexicals;
-        this.errors = new HashMap<>();
-        this.symbolTable = new HashMap<>();
+    // Project mode: this is file number file of project; see projectSymbols.
+    public void setProject(projectSymbols project, int file) {
+        this.project = project;
+        this.file = file;
     }
 
     public void analyzeSemantics() {
-        errors.clear();
-        symbolTable.clear();
+        analyzeSemantics(analysisProgress.NONE);
+    }
 
-        System.out.println("\n--- SEMANTICS DEBUG ---");
+    // Throws CancellationException once progress reports the run as cancelled.
+    public void analyzeSemantics(analysisProgress progress) {
+        diagnostics.clear();
+        symbols.clear();
+        symbols.setProject(project, file);
+        metrics = new phaseMetrics("semantic");
+        metrics.start();
+
+        int traceLevel = trace.level(diagnostic.SEMANTIC);
+        if (traceLevel > tracer.OFF) trace.trace(diagnostic.SEMANTIC, "--- SEMANTICS DEBUG ---");
+
+        expressionTree expressions = new expressionTree();
+        syntaxAction.statements statements = recovering ? new syntaxAction.statements() : null;
+        symbolTable declaredVariables = recovering ? new symbolTable() : null;
+        if (recovering) declaredVariables.setProject(project, file);
+
+        for (int line = 0; line < tokens.lineCount(); line++) {
+            if (line % analysisProgress.INTERVAL == 0) progress.checkpoint(line, tokens.lineCount());
+            int lineNumber = tokens.lineNumber(line);
+
+            if (tokens.lineSize(line) == 0) continue;
+
+            int reported = diagnostics.size();
+            boolean passed = recovering
+                    ? analyzeStatements(tokens, line, statements, declaredVariables, symbols, expressions, diagnostics)
+                    : analyzeLine(tokens, line, symbols, expressions, diagnostics);
+            if (passed) {
+                if (traceLevel >= tracer.ALL) trace.trace(diagnostic.SEMANTIC, "Line " + lineNumber + ": Semantics Correct");
+            } else if (traceLevel >= tracer.ERRORS) {
+                for (int d = reported; d < diagnostics.size(); d++) {
+                    trace.trace(diagnostic.SEMANTIC, "Line " + lineNumber + " Error: " + diagnostics.message(d));
+                }
+            }
+        }
+        metrics.setLines(tokens.lineCount());
+        metrics.countErrors(diagnostics);
+        metrics.finish();
+        progress.linesDone(tokens.lineCount(), tokens.lineCount());
+    }
+
+    // One non-empty line; symbols holds the declarations visible above it and takes this line's declaration or block.
+    // expressions is scratch space for the right-hand side. Returns false after reporting the line's problem to diagnostics.
+    static boolean analyzeLine(tokenStream tokens, int line, symbolTable symbols, expressionTree expressions, diagnosticSink diagnostics) {
+        byte firstToken = tokens.lineKind(line, 0);
 
-        for (Map.Entry<Integer, ArrayList<String>> entry : processedTokens.entrySet()) {
-            int lineNumber = entry.getKey();
-            ArrayList<String> tokens = entry.getValue();
-            ArrayList<String> lexemes = processedLexicals.get(lineNumber);
+        if (firstToken == tokenStream.DATA_TYPE) {
+            // Handle Declaration: int x = 5;
+            return analyzeDeclaration(tokens, line, symbols, expressions, diagnostics);
+        }
+        else if (firstToken == tokenStream.IDENTIFIER) {
+            // Handle Assignment: x = 10;
+            return analyzeAssignment(tokens, line, symbols, expressions, diagnostics);
+        }
+        else if (firstToken == tokenStream.OPEN_BRACE || firstToken == tokenStream.CLOSE_BRACE) {
+            // Handle Block: { ... }
+            for (int t = tokens.firstToken(line); t < tokens.endToken(line); t++) {
+                if (tokens.kind(t) == tokenStream.OPEN_BRACE) symbols.pushScope();
+                else if (tokens.kind(t) == tokenStream.CLOSE_BRACE) symbols.popScope();
+            }
+        }
+        return true;
+    }
 
-            if (tokens.isEmpty()) continue;
+    // Recovering counterpart of analyzeLine(): of a non-empty line, only the statements that pass
+    // syntaxAction's check are analyzed, so a broken statement is reported once, by the syntax
+    // phase. declaredVariables is that check's own table, kept like syntaxAction keeps it.
+    static boolean analyzeStatements(tokenStream tokens, int line, syntaxAction.statements statements, symbolTable declaredVariables,
+                                     symbolTable symbols, expressionTree expressions, diagnosticSink diagnostics) {
+        boolean passed = true;
+        statements.reset(tokens, line);
+        while (statements.next()) {
+            tokenStream statement = statements.statement();
+            if (statements.errorAt() >= 0 || !syntaxAction.checkLine(statement, 0, declaredVariables, expressions, statements.found())) {
+                statements.discard();
+            } else if (!analyzeLine(statement, 0, symbols, expressions, statements.found())) {
+                statements.report(diagnostics);
+                passed = false;
+            }
+        }
+        return passed;
+    }
 
-            try {
-                String firstToken = tokens.get(0);
+    private static boolean analyzeDeclaration(tokenStream tokens, int line, symbolTable symbols, expressionTree expressions,
+                                              diagnosticSink diagnostics) {
+        int size = tokens.lineSize(line);
+        if (size < 2) return fail(diagnostics, tokens, line, 0, diagnosticCode.TOKEN_MISSING, 1, size);
 
-                if (firstToken.equals("<data_type>")) {
-                    // Handle Declaration: int x = 5;
-                    analyzeDeclaration(tokens, lexemes);
-                }
-                else if (firstToken.equals("<identifier>")) {
-                    // Handle Assignment: x = 10;
-                    analyzeAssignment(tokens, lexemes);
-                }
+        dataType declaredType = dataType.of(tokens, tokens.lineToken(line, 0));
+        int variable = symbols.intern(tokens, tokens.lineToken(line, 1));
 
-                // If we get here without exception, the line is semantically valid
-                System.out.println("Line " + lineNumber + ": Semantics Correct");
+        if (!symbols.declare(variable, declaredType)) {
+            return fail(diagnostics, tokens, line, 2, diagnosticCode.ALREADY_DECLARED, symbols.name(variable));
+        }
+        projectSymbols.declaration owner = symbols.conflict(variable);
+        if (owner != null) {
+            return fail(diagnostics, tokens, line, 2, diagnosticCode.DECLARED_IN_OTHER_FILE, symbols.name(variable),
+                    symbols.projectFileName(owner.file()), owner.line());
+        }
 
-            } catch (Exception e) {
-                errors.put(lineNumber, e.getMessage());
-                System.err.println("Line " + lineNumber + " Error: " + e.getMessage());
-            }
+        if (size > 2 && tokens.lineKind(line, 2) == tokenStream.ASSIGNMENT_OPERATOR) {
+            if (size < 4) return fail(diagnostics, tokens, line, 0, diagnosticCode.TOKEN_MISSING, 3, size);
+            return checkExpression(tokens, line, 3, declaredType, symbols, expressions, diagnostics);
         }
+        return true;
     }
 
-    private void analyzeDeclaration(ArrayList<String> tokens, ArrayList<String> lexemes) throws Exception {
-        String dataType = lexemes.get(0);
-        String varName = lexemes.get(1);
+    private static boolean analyzeAssignment(tokenStream tokens, int line, symbolTable symbols, expressionTree expressions,
+                                             diagnosticSink diagnostics) {
+        int size = tokens.lineSize(line);
+        if (size < 3) return fail(diagnostics, tokens, line, 0, diagnosticCode.TOKEN_MISSING, 2, size);
 
-        if (symbolTable.containsKey(varName)) {
-            throw new Exception("Variable '" + varName + "' is already declared.");
+        int nameToken = tokens.lineToken(line, 0);
+        dataType expectedType = symbols.resolve(tokens, nameToken);
+        if (expectedType == null) {
+            return fail(diagnostics, tokens, line, 1, diagnosticCode.NOT_DECLARED, tokens.lexeme(nameToken));
         }
 
-        symbolTable.put(varName, dataType);
+        return checkExpression(tokens, line, 2, expectedType, symbols, expressions, diagnostics);
+    }
 
-        if (tokens.size() > 2 && tokens.get(2).equals("<assignment_operator>")) {
-            String valueLexeme = lexemes.get(3); // The actual value (e.g., "5", "100L", "3.14f")
-            checkTypeCompatibility(dataType, valueLexeme);
+    // The right-hand side from position from of the line. A lone value keeps the literal checks
+    // below. A right-hand side that does not parse is the syntax phase's to report; as before
+    // expressions, the token after '=' still gets the literal checks when it is a value or no
+    // expression at all.
+    private static boolean checkExpression(tokenStream tokens, int line, int from, dataType declaredType, symbolTable symbols,
+                                           expressionTree expressions, diagnosticSink diagnostics) {
+        int start = tokens.lineToken(line, from);
+        int root = expressions.parse(tokens, start, tokens.endToken(line));
+        if (root < 0) {
+            if (expressions.errorToken() != start && tokens.kind(start) != tokenStream.VALUE) return true;
+            return checkTypeCompatibility(tokens, line, from + 1, declaredType, tokens.lexeme(start), diagnostics);
         }
-    }
+        if (expressions.kind(root) == expressionTree.VALUE) {
+            return checkTypeCompatibility(tokens, line, from + 1, declaredType, tokens.lexeme(expressions.token(root)), diagnostics);
+        }
+        if (!typeExpression(tokens, line, expressions, symbols, diagnostics)) return false;
 
-    private void analyzeAssignment(ArrayList<String> tokens, ArrayList<String> lexemes) throws Exception {
-        String varName = lexemes.get(0);
-        String valueLexeme = lexemes.get(2);
+        dataType inferredType = expressions.type(root);
+        if (inferredType.widensTo(declaredType)) return true;
 
-        if (!symbolTable.containsKey(varName)) {
-            throw new Exception("Variable '" + varName + "' is not declared.");
+        // constant int expressions narrow to byte/short like int literals do
+        if (expressions.isConstant(root) && inferredType == dataType.INT) {
+            long value = expressions.value(root);
+            if (declaredType == dataType.BYTE) {
+                if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) return true;
+                return fail(diagnostics, tokens, line, from + 1, diagnosticCode.BYTE_OUT_OF_RANGE, value);
+            }
+            if (declaredType == dataType.SHORT) {
+                if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) return true;
+                return fail(diagnostics, tokens, line, from + 1, diagnosticCode.SHORT_OUT_OF_RANGE, value);
+            }
         }
+        String text = expressionTree.text(tokens, expressions.first(root), expressions.end(root));
+        return fail(diagnostics, tokens, line, from + 1, diagnosticCode.TYPE_MISMATCH, inferredType, text, declaredType);
+    }
 
+    // Types every node of the parsed expression, operands first, and folds int and long constants.
+    // Returns false after reporting the first problem. Deliberately unlike Java:
+    //   - a constant that overflows or divides by zero is reported instead of wrapping or throwing;
+    //   - char literals are not folded, so byte b = 'a' + 1; is a type mismatch;
+    //   - -2147483648 is one literal, but - 2147483648 negates an int that is already out of range.
+    private static boolean typeExpression(tokenStream tokens, int line, expressionTree expressions, symbolTable symbols,
+                                          diagnosticSink diagnostics) {
+        int first = tokens.firstToken(line);
+        for (int node = 0; node < expressions.size(); node++) {
+            int token = expressions.token(node);
+            int column = token - first + 1;
+            switch (expressions.kind(node)) {
+                case expressionTree.VALUE: {
+                    String lexeme = tokens.lexeme(token);
+                    literal value = literal.scan(lexeme);
+                    if (value.type == dataType.INT && !value.fitsInt())
+                        return fail(diagnostics, tokens, line, column, diagnosticCode.INT_OUT_OF_RANGE, lexeme);
+                    if (value.type == dataType.LONG && !value.fitsLong)
+                        return fail(diagnostics, tokens, line, column, diagnosticCode.LONG_OUT_OF_RANGE, lexeme);
+                    if (value.type == dataType.INT || value.type == dataType.LONG) {
+                        expressions.setConstant(node, value.type, value.value);
+                    } else {
+                        expressions.setType(node, value.type);
+                    }
+                    break;
+                }
+                case expressionTree.NAME: {
+                    dataType type = symbols.resolve(tokens, token);
+                    if (type == null) return fail(diagnostics, tokens, line, column, diagnosticCode.NOT_DECLARED, tokens.lexeme(token));
+                    expressions.setType(node, type);
+                    break;
+                }
+                case expressionTree.UNARY: {
+                    int operand = expressions.left(node);
+                    dataType type = expressions.type(operand);
+                    if (!isNumeric(type)) {
+                        return fail(diagnostics, tokens, line, column, diagnosticCode.BAD_OPERAND_TYPE, tokens.lexeme(token), type);
+                    }
+                    dataType promoted = promote(type, dataType.INT);
+                    if (!expressions.isConstant(operand)) {
+                        expressions.setType(node, promoted);
+                    } else if (expressionTree.operator(tokens, token) == '+') {
+                        expressions.setConstant(node, promoted, expressions.value(operand));
+                    } else if (!fold(expressions, node, promoted, -expressions.value(operand), expressions.value(operand) == Long.MIN_VALUE)) {
+                        return failOverflow(tokens, line, column, expressions, node, promoted, diagnostics);
+                    }
+                    break;
+                }
+                default: {
+                    int left = expressions.left(node);
+                    int right = expressions.right(node);
+                    dataType leftType = expressions.type(left);
+                    dataType rightType = expressions.type(right);
+                    char operator = expressionTree.operator(tokens, token);
+                    if (operator == '+' && (leftType == dataType.STRING || rightType == dataType.STRING)
+                            && leftType != dataType.UNKNOWN && rightType != dataType.UNKNOWN) {
+                        expressions.setType(node, dataType.STRING);
+                        break;
+                    }
+                    if (!isNumeric(leftType) || !isNumeric(rightType)) {
+                        return fail(diagnostics, tokens, line, column, diagnosticCode.BAD_OPERAND_TYPES, tokens.lexeme(token), leftType, rightType);
+                    }
+                    dataType promoted = promote(promote(leftType, rightType), dataType.INT);
+                    if (!expressions.isConstant(left) || !expressions.isConstant(right)) {
+                        expressions.setType(node, promoted);
+                        break;
+                    }
+                    long a = expressions.value(left);
+                    long b = expressions.value(right);
+                    if (b == 0 && (operator == '/' || operator == '%')) {
+                        return fail(diagnostics, tokens, line, column, diagnosticCode.DIVISION_BY_ZERO,
+                                expressionTree.text(tokens, expressions.first(node), expressions.end(node)));
+                    }
+                    long result;
+                    boolean overflow;
+                    switch (operator) {
+                        case '+': result = a + b; overflow = ((a ^ result) & (b ^ result)) < 0; break;
+                        case '-': result = a - b; overflow = ((a ^ b) & (a ^ result)) < 0; break;
+                        case '*': result = a * b; overflow = Math.multiplyHigh(a, b) != (result >> 63); break;
+                        case '/': result = a / b; overflow = a == Long.MIN_VALUE && b == -1; break;
+                        default: result = a % b; overflow = false; break;
+                    }
+                    if (!fold(expressions, node, promoted, result, overflow)) {
+                        return failOverflow(tokens, line, column, expressions, node, promoted, diagnostics);
+                    }
+                    break;
+                }
+            }
+        }
+        return true;
+    }
 
-        String expectedType = symbolTable.get(varName);
-
-        checkTypeCompatibility(expectedType, valueLexeme);
+    // Stores value as the node's constant unless it overflowed (the long arithmetic, or int's range).
+    private static boolean fold(expressionTree expressions, int node, dataType type, long value, boolean overflow) {
+        if (overflow || (type == dataType.INT && (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE))) return false;
+        expressions.setConstant(node, type, value);
+        return true;
     }
 
-    private void checkTypeCompatibility(String declaredType, String valueLexeme) throws Exception {
-        String inferredType = inferType(valueLexeme);
+    private static boolean failOverflow(tokenStream tokens, int line, int column, expressionTree expressions, int node, dataType type,
+                                        diagnosticSink diagnostics) {
+        String text = expressionTree.text(tokens, expressions.first(node), expressions.end(node));
+        return fail(diagnostics, tokens, line, column,
+                type == dataType.INT ? diagnosticCode.INT_OUT_OF_RANGE : diagnosticCode.LONG_OUT_OF_RANGE, text);
+    }
 
-        if (declaredType.equals(inferredType)) return;
+    // char counts as numeric, as in Java arithmetic
+    private static boolean isNumeric(dataType type) {
+        return type.widensTo(dataType.DOUBLE) || type == dataType.CHAR;
+    }
 
-        if (declaredType.equals("byte") && inferredType.equals("int")) {
-            try {
-                int val = Integer.parseInt(valueLexeme);
-                if (val >= Byte.MIN_VALUE && val <= Byte.MAX_VALUE) return;
-                throw new Exception("Value " + val + " is out of range for byte (-128 to 127).");
-            } catch (NumberFormatException e) { /* Ignore */ }
-        }
+    // Binary numeric promotion: the wider of the two, with char taken as int.
+    private static dataType promote(dataType a, dataType b) {
+        if (a == dataType.CHAR) a = dataType.INT;
+        if (b == dataType.CHAR) b = dataType.INT;
+        return a.widensTo(b) ? b : a;
+    }
 
-        if (declaredType.equals("short") && inferredType.equals("int")) {
-            try {
-                int val = Integer.parseInt(valueLexeme);
-                if (val >= Short.MIN_VALUE && val <= Short.MAX_VALUE) return;
-                throw new Exception("Value " + val + " is out of range for short (-32768 to 32767).");
-            } catch (NumberFormatException e) { /* Ignore */ }
-        }
+    private static boolean checkTypeCompatibility(tokenStream tokens, int line, int column, dataType declaredType, String valueLexeme, diagnosticSink diagnostics) {
+        literal value = literal.scan(valueLexeme);
+        dataType inferredType = value.type;
 
-        if (declaredType.equals("long") && inferredType.equals("int")) return;
+        if (inferredType == dataType.INT && !value.fitsInt())
+            return fail(diagnostics, tokens, line, column, diagnosticCode.INT_OUT_OF_RANGE, valueLexeme);
+        if (inferredType == dataType.LONG && !value.fitsLong)
+            return fail(diagnostics, tokens, line, column, diagnosticCode.LONG_OUT_OF_RANGE, valueLexeme);
 
+        if (inferredType.widensTo(declaredType)) return true;
 
-        if (declaredType.equals("float") && (inferredType.equals("int") || inferredType.equals("long"))) return;
+        // int constants narrow to byte/short when they fit
+        if (declaredType == dataType.BYTE && inferredType == dataType.INT) {
+            if (value.value >= Byte.MIN_VALUE && value.value <= Byte.MAX_VALUE) return true;
+            return fail(diagnostics, tokens, line, column, diagnosticCode.BYTE_OUT_OF_RANGE, value.value);
+        }
 
-        if (declaredType.equals("double") && (inferredType.equals("int") || inferredType.equals("long") || inferredType.equals("float"))) return;
+        if (declaredType == dataType.SHORT && inferredType == dataType.INT) {
+            if (value.value >= Short.MIN_VALUE && value.value <= Short.MAX_VALUE) return true;
+            return fail(diagnostics, tokens, line, column, diagnosticCode.SHORT_OUT_OF_RANGE, value.value);
+        }
 
-        throw new Exception("Type Mismatch: Cannot assign " + inferredType + " (" + valueLexeme + ") to " + declaredType + " variable.");
+        return fail(diagnostics, tokens, line, column, diagnosticCode.TYPE_MISMATCH, inferredType, valueLexeme, declaredType);
     }
 
-    private String inferType(String value) {
-        if (value.matches("\".*\"")) return "String";
-        if (value.matches("'[^']'")) return "char";
-        if (value.equals("true") || value.equals("false")) return "boolean";
+    private static boolean fail(diagnosticSink diagnostics, tokenStream tokens, int line, int column, diagnosticCode code, Object... arguments) {
+        diagnostics.report(tokens.lineNumber(line), column, diagnostic.SEMANTIC, code, arguments);
+        return false;
+    }
 
-        if (value.matches("-?\\d+[lL]")) return "long"; // Ends in L or l
-        if (value.matches("[-+]?\\d*\\.?\\d+([eE][-+]?\\d+)?[fF]")) return "float"; // Ends in f or F
-        if (value.matches("[-+]?\\d*\\.?\\d+([eE][-+]?\\d+)?[dD]")) return "double"; // Ends in d or D
-        if (value.contains(".")) return "double"; // Default decimal is double (e.g. 3.14)
-        if (value.matches("-?\\d+")) return "int"; // Standard integer (also used for byte/short candidates)
+    public phaseMetrics getMetrics() {
+        return metrics;
+    }
 
-        return "unknown";
+    public diagnosticSink getDiagnostics() {
+        return diagnostics;
     }
 
-    public HashMap<Integer, String> getErrors() {
-        return errors;
+    public lineMap<String> getErrors() {
+        return diagnostics.errorsByLine();
     }
 
 
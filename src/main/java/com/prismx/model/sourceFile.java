@@ -0,0 +1,234 @@
+package com.prismx.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// One read-only mapping of a UTF-8 source file, shared by the viewer and the analyzers.
+// Lines are split like BufferedReader.readLine(): on "\n", "\r" or "\r\n".
+public class sourceFile {
+    private final File file;
+    private final MappedByteBuffer bytes;
+    private final boolean ascii;
+    private long hash;
+    private volatile boolean hashed;
+
+    // lineStarts[i] is the byte offset of line i + 1; lineStarts[lineCount] is the end of the file
+    private int[] lineStarts;
+    private int lineCount;
+
+    public sourceFile(File file) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File is too large to map: " + file.getName());
+            }
+            this.bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        this.ascii = indexLines();
+    }
+
+    private boolean indexLines() {
+        int size = bytes.limit();
+        lineStarts = new int[Math.max(16, size / 32)];
+        boolean allAscii = true;
+        int start = 0;
+        int i = 0;
+        while (i < size) {
+            byte b = bytes.get(i++);
+            if (b == '\n' || b == '\r') {
+                if (b == '\r' && i < size && bytes.get(i) == '\n') i++;
+                addLine(start);
+                start = i;
+            } else if (b < 0) {
+                allAscii = false;
+            }
+        }
+        if (start < size) {
+            addLine(start);
+        }
+        if (lineCount + 1 > lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineCount + 1);
+        }
+        lineStarts[lineCount] = size;
+        return allAscii;
+    }
+
+    private void addLine(int start) {
+        if (lineCount + 1 >= lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineStarts.length * 2);
+        }
+        lineStarts[lineCount++] = start;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int lineCount() {
+        return lineCount;
+    }
+
+    public int byteSize() {
+        return bytes.limit();
+    }
+
+    public boolean isAscii() {
+        return ascii;
+    }
+
+    // MurmurHash64A of the file's bytes, eight at a time straight from the mapping. Used with
+    // byteSize() as the result cache key; computed on first use.
+    public long contentHash() {
+        if (hashed) return hash;
+        final long m = 0xc6a4a7935bd1e995L;
+        final int r = 47;
+        int size = bytes.limit();
+        ByteBuffer data = bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        long h = 0x9747b28cL ^ (size * m);
+        int end = size & ~7;
+        for (int i = 0; i < end; i += 8) {
+            long k = data.getLong(i);
+            k *= m;
+            k ^= k >>> r;
+            k *= m;
+            h ^= k;
+            h *= m;
+        }
+        if (end < size) {
+            long tail = 0;
+            for (int i = size - 1; i >= end; i--) {
+                tail = (tail << 8) | (data.get(i) & 0xff);
+            }
+            h ^= tail;
+            h *= m;
+        }
+        h ^= h >>> r;
+        h *= m;
+        h ^= h >>> r;
+        hash = h;
+        hashed = true;
+        return h;
+    }
+
+    // Byte range of a line (1-based), without its terminator.
+    public int lineStart(int lineNumber) {
+        return lineStarts[lineNumber - 1];
+    }
+
+    public int lineEnd(int lineNumber) {
+        int end = lineStarts[lineNumber];
+        if (end > lineStarts[lineNumber - 1] && bytes.get(end - 1) == '\n') end--;
+        if (end > lineStarts[lineNumber - 1] && bytes.get(end - 1) == '\r') end--;
+        return end;
+    }
+
+    public String line(int lineNumber) {
+        StringBuilder text = new StringBuilder();
+        appendLine(lineNumber, text);
+        return text.toString();
+    }
+
+    // At most maxBytes of the line, for views that only ever show the start of a huge line.
+    public String line(int lineNumber, int maxBytes) {
+        StringBuilder text = new StringBuilder();
+        int start = lineStart(lineNumber);
+        appendRange(start, Math.min(lineEnd(lineNumber), start + maxBytes), text);
+        return text.toString();
+    }
+
+    public void appendLine(int lineNumber, StringBuilder target) {
+        appendRange(lineStart(lineNumber), lineEnd(lineNumber), target);
+    }
+
+    private void appendRange(int start, int end, StringBuilder target) {
+        if (ascii) {
+            for (int i = start; i < end; i++) {
+                target.append((char) bytes.get(i));
+            }
+        } else {
+            target.append(StandardCharsets.UTF_8.decode(bytes.slice(start, end - start)));
+        }
+    }
+
+    public Reader reader() {
+        return new mappedReader(bytes.duplicate(), ascii);
+    }
+
+    // Reader over lines firstLine..lastLine (1-based, inclusive), terminators included.
+    public Reader reader(int firstLine, int lastLine) {
+        int start = lineStart(firstLine);
+        return new mappedReader(bytes.slice(start, lineStarts[lastLine] - start), ascii);
+    }
+
+    private static CharsetDecoder newDecoder() {
+        return StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    // Decodes the mapping a window at a time; pure ASCII files skip the decoder entirely.
+    private static class mappedReader extends Reader {
+        private final ByteBuffer source;
+        private final boolean ascii;
+        private final CharsetDecoder decoder;
+        private final CharBuffer decoded;
+        private boolean flushed;
+
+        mappedReader(ByteBuffer source, boolean ascii) {
+            this.source = source;
+            this.ascii = ascii;
+            this.decoder = ascii ? null : newDecoder();
+            this.decoded = ascii ? null : CharBuffer.allocate(8192).flip();
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (ascii) {
+                int count = Math.min(len, source.remaining());
+                if (count == 0) return -1;
+                for (int i = 0; i < count; i++) {
+                    cbuf[off + i] = (char) source.get();
+                }
+                return count;
+            }
+            if (!decoded.hasRemaining() && !decodeMore()) {
+                return -1;
+            }
+            int count = Math.min(len, decoded.remaining());
+            decoded.get(cbuf, off, count);
+            return count;
+        }
+
+        private boolean decodeMore() {
+            decoded.clear();
+            if (source.hasRemaining()) {
+                decoder.decode(source, decoded, true);
+            }
+            if (!source.hasRemaining() && !flushed) {
+                decoder.flush(decoded);
+                flushed = true;
+            }
+            decoded.flip();
+            return decoded.hasRemaining();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
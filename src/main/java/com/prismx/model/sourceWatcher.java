@@ -0,0 +1,339 @@
+package com.prismx.model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// Watch mode: analyzes the given files, and the .txt/.java files under the given directories, once
+// on start() and then whenever one changes on disk. One daemon thread takes the WatchService
+// events and waits until a file has been quiet for the debounce interval, so an editor's burst of
+// writes for one save becomes one run. Runs go to a pool of daemon workers; a newer change of a
+// file cancels its run still in flight (through analysisProgress) and only the latest run of a
+// file reports. A run whose content hash and size match what was last reported, e.g. a save that
+// changed nothing or a touch, reports nothing. Directories created under a watched directory are
+// watched too. Without recovering or tracing, each file keeps an incrementalAnalysis between runs,
+// so a save only re-lexes and re-checks the lines it changed and the lines those affect.
+public class sourceWatcher implements Closeable {
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 20;
+    // larger files get a full run each time; the incremental engine keeps every line's tokens apart
+    static final int MAX_INCREMENTAL_LINES = 200_000;
+
+    // Called on a worker thread. Calls for one file never overlap and come in the order of its changes.
+    public interface listener {
+        void analyzed(sourceFile source, analysisResult result, long nanos);
+
+        default void removed(File file) {}
+
+        default void failed(File file, Exception e) {}
+    }
+
+    private final WatchService service;
+    // both only touched by the constructor and then the watcher thread
+    private final Map<WatchKey, Path> directories = new HashMap<>();
+    private final Set<Path> trees = new HashSet<>();
+    // files named on their own; their directory is watched for them alone
+    private final Set<Path> files = new HashSet<>();
+    private final List<Path> initial = new ArrayList<>();
+
+    private final ConcurrentHashMap<Path, fileState> states = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    private final Thread thread;
+    private final tracer trace;
+    private final boolean recovering;
+    private final long debounceNanos;
+    private final listener listener;
+
+    // A file's latest run and the content it last reported; guarded by itself. The engine holds the
+    // content of the last run that got through it and is guarded by engineLock, so that a run
+    // updating it never holds up dispatch().
+    private static final class fileState {
+        run latest;
+        boolean reported;
+        long hash;
+        long size;
+        final Object engineLock = new Object();
+        incrementalAnalysis engine;
+    }
+
+    public sourceWatcher(List<Path> roots, tracer trace, boolean recovering, int jobs, long debounceMillis, listener listener)
+            throws IOException {
+        this.trace = trace;
+        this.recovering = recovering;
+        this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+        this.listener = listener;
+        this.service = FileSystems.getDefault().newWatchService();
+        try {
+            for (Path root : roots) {
+                Path path = root.normalize();
+                if (Files.isDirectory(path)) {
+                    registerTree(path, initial);
+                } else if (Files.isRegularFile(path)) {
+                    Path parent = path.getParent();
+                    register(parent == null ? Path.of(".") : parent);
+                    if (files.add(path)) initial.add(path);
+                } else {
+                    throw new IOException("No such file or directory: " + root);
+                }
+            }
+        } catch (IOException e) {
+            service.close();
+            throw e;
+        }
+
+        AtomicInteger workerNumber = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(jobs, task -> {
+            Thread worker = new Thread(task, "prism-watch-" + workerNumber.incrementAndGet());
+            worker.setDaemon(true);
+            return worker;
+        });
+        this.thread = new Thread(this::watch, "prism-watch");
+        thread.setDaemon(true);
+    }
+
+    // Analyzes every watched file once, then follows their changes. Returns how many files that was.
+    public int start() {
+        for (Path path : initial) dispatch(path);
+        thread.start();
+        return initial.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        service.close();
+        workers.shutdownNow();
+        for (fileState state : states.values()) {
+            synchronized (state) {
+                if (state.latest != null) state.latest.cancelled = true;
+            }
+        }
+    }
+
+    private void register(Path directory) throws IOException {
+        WatchKey key = directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        directories.put(key, directory);
+    }
+
+    // Watches directory and every directory below it, adding the source files found to found. Each
+    // directory is listed only once it is registered, so a file created meanwhile is either listed
+    // or reported by an event.
+    private void registerTree(Path directory, List<Path> found) throws IOException {
+        register(directory);
+        trees.add(directory);
+        List<Path> children;
+        try (Stream<Path> list = Files.list(directory)) {
+            children = list.sorted().toList();
+        }
+        for (Path path : children) {
+            if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                registerTree(path, found);
+            } else if (isSource(path) && Files.isRegularFile(path)) {
+                found.add(path);
+            }
+        }
+    }
+
+    // .txt and .java files, like the file chooser and prismBatch
+    private static boolean isSource(Path path) {
+        String name = path.toString();
+        return name.endsWith(".txt") || name.endsWith(".java");
+    }
+
+    private void watch() {
+        // file -> System.nanoTime() at which it has been quiet long enough
+        Map<Path, Long> due = new HashMap<>();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                long wait = Long.MAX_VALUE;
+                for (Iterator<Map.Entry<Path, Long>> i = due.entrySet().iterator(); i.hasNext(); ) {
+                    Map.Entry<Path, Long> entry = i.next();
+                    long left = entry.getValue() - now;
+                    if (left <= 0) {
+                        dispatch(entry.getKey());
+                        i.remove();
+                    } else {
+                        wait = Math.min(wait, left);
+                    }
+                }
+                WatchKey key = wait == Long.MAX_VALUE ? service.take() : service.poll(wait, TimeUnit.NANOSECONDS);
+                if (key != null) collect(key, due);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void collect(WatchKey key, Map<Path, Long> due) {
+        Path directory = directories.get(key);
+        long deadline = System.nanoTime() + debounceNanos;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                // events were lost: look at everything again, the hash check drops what did not change
+                for (Path path : files) due.put(path, deadline);
+                for (Path path : states.keySet()) due.put(path, deadline);
+                for (Path tree : trees) {
+                    try (Stream<Path> list = Files.list(tree)) {
+                        list.filter(sourceWatcher::isSource).forEach(path -> due.put(path, deadline));
+                    } catch (IOException e) {
+                        // gone; its key reports that
+                    }
+                }
+                continue;
+            }
+            if (directory == null) continue;
+            Path path = directory.resolve((Path) event.context()).normalize();
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && trees.contains(directory)
+                    && Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                // files may already be inside by the time it is registered
+                List<Path> found = new ArrayList<>();
+                try {
+                    registerTree(path, found);
+                } catch (IOException e) {
+                    // gone again already
+                }
+                for (Path file : found) due.put(file, deadline);
+            } else if (files.contains(path) || (trees.contains(directory) && isSource(path))) {
+                due.put(path, deadline);
+            }
+        }
+        if (!key.reset()) {
+            // the directory is gone; its files got their delete events
+            trees.remove(directories.remove(key));
+        }
+    }
+
+    private void dispatch(Path path) {
+        fileState state = states.computeIfAbsent(path, p -> new fileState());
+        run next = new run(path, state);
+        synchronized (state) {
+            if (state.latest != null) state.latest.cancelled = true;
+            state.latest = next;
+        }
+        try {
+            workers.execute(next);
+        } catch (RejectedExecutionException e) {
+            // closed
+        }
+    }
+
+    private final class run implements Runnable, analysisProgress {
+        private final Path path;
+        private final fileState state;
+        private volatile boolean cancelled;
+
+        run(Path path, fileState state) {
+            this.path = path;
+            this.state = state;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) return;
+            long start = System.nanoTime();
+            File file = path.toFile();
+            try {
+                if (!Files.isRegularFile(path)) {
+                    dropEngine();
+                    synchronized (state) {
+                        if (state.latest != this || !state.reported) return;
+                        state.reported = false;
+                        listener.removed(file);
+                    }
+                    return;
+                }
+                sourceFile source = new sourceFile(file);
+                long hash = source.contentHash();
+                synchronized (state) {
+                    if (state.latest != this) return;
+                    if (state.reported && state.hash == hash && state.size == source.byteSize()) return;
+                }
+                tracer fileTrace = trace == tracer.NONE ? trace : trace.prefixed(file.getPath() + ": ");
+                analysisResult result = !recovering && trace == tracer.NONE && source.lineCount() <= MAX_INCREMENTAL_LINES
+                        ? reanalyze(source)
+                        : analysisResult.analyze(source, fileTrace, recovering, null, 0, this);
+                long nanos = System.nanoTime() - start;
+                synchronized (state) {
+                    if (state.latest != this) return;
+                    state.reported = true;
+                    state.hash = hash;
+                    state.size = source.byteSize();
+                    listener.analyzed(source, result, nanos);
+                }
+            } catch (CancellationException e) {
+                // a newer change took over
+            } catch (IOException | RuntimeException e) {
+                fail(file, e);
+            } catch (InternalError e) {
+                // the file was truncated while mapped; its next event runs it again
+                fail(file, new IOException("File changed while it was read", e));
+            }
+        }
+
+        // The engine brought up to source, or started on it for the file's first run.
+        private analysisResult reanalyze(sourceFile source) {
+            synchronized (state.engineLock) {
+                if (cancelled) throw new CancellationException();
+                try {
+                    if (state.engine == null) {
+                        state.engine = new incrementalAnalysis(source);
+                    } else {
+                        state.engine.update(source);
+                    }
+                    return state.engine.result();
+                } catch (RuntimeException | InternalError e) {
+                    // half-updated; the next run starts over from the file
+                    state.engine = null;
+                    throw e;
+                }
+            }
+        }
+
+        private void dropEngine() {
+            synchronized (state.engineLock) {
+                state.engine = null;
+            }
+        }
+
+        private void fail(File file, Exception e) {
+            synchronized (state) {
+                if (state.latest != this) return;
+                state.reported = false;
+                listener.failed(file, e);
+            }
+        }
+
+        @Override
+        public void linesDone(long done, long total) {}
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.prismx.model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+public class streamLexer {
+    public interface tokenConsumer {
+        void token(byte kind, int line, long start, int length);
+
+        default void endLine(int line) {}
+    }
+
+    private static final int DEFAULT_WINDOW = 8192;
+    private static final int BETWEEN = 0;
+    private static final int IN_WORD = 1;
+    private static final int IN_STRING = 2;
+
+    private final Reader reader;
+    private final int firstLine;
+    private char[] buffer;
+    private CharBuffer window;
+    private int limit;
+    private long bufferOffset;
+    private int lexemeStart;
+    private int lexemeEnd;
+    // kind of the line's last token, -1 at the start of a line; decides what a '+' or '-' is
+    private byte lastKind = -1;
+
+    public streamLexer(Reader reader) {
+        this(reader, DEFAULT_WINDOW);
+    }
+
+    public streamLexer(Reader reader, int windowSize) {
+        this(reader, windowSize, 1);
+    }
+
+    // firstLine lets a reader that starts mid-file keep the file's line numbers
+    public streamLexer(Reader reader, int windowSize, int firstLine) {
+        this.reader = reader;
+        this.firstLine = firstLine;
+        this.buffer = new char[Math.max(16, windowSize)];
+        this.window = CharBuffer.wrap(buffer);
+    }
+
+    // Same lexemes and tokens as cleaner() + lexemeSplit() + tokenizer(), without building any of the maps.
+    // Empty lines are skipped like cleaner() does; every other line gets an endLine() even if it has no tokens.
+    public void lex(tokenConsumer consumer) throws IOException {
+        int position = 0;
+        int state = BETWEEN;
+        int start = 0;
+        char quote = '"';
+        int line = firstLine;
+        int lineLength = 0;
+        boolean skipLineFeed = false;
+
+        while (true) {
+            if (position == limit) {
+                int shift = compact(state == BETWEEN ? position : start);
+                position -= shift;
+                start -= shift;
+                if (!fill()) break;
+            }
+            char c = buffer[position];
+
+            if (c == '\n' && skipLineFeed) {
+                skipLineFeed = false;
+                position++;
+                continue;
+            }
+            if (c == '\n' || c == '\r') {
+                if (state != BETWEEN) {
+                    emitTrimmed(consumer, line, start, position);
+                    state = BETWEEN;
+                }
+                if (lineLength > 0) {
+                    consumer.endLine(line);
+                }
+                lastKind = -1;
+                line++;
+                lineLength = 0;
+                skipLineFeed = c == '\r';
+                position++;
+                continue;
+            }
+            skipLineFeed = false;
+            lineLength++;
+
+            if (state == IN_STRING) {
+                if (c == quote) {
+                    emit(consumer, line, start, position + 1);
+                    state = BETWEEN;
+                }
+            } else if (c == '"' || c == '\'') {
+                if (state == IN_WORD) {
+                    emitTrimmed(consumer, line, start, position);
+                }
+                state = IN_STRING;
+                start = position;
+                quote = c;
+            } else if (lexicalAction.isBreak(c)) {
+                if (state == IN_WORD) {
+                    emitTrimmed(consumer, line, start, position);
+                    state = BETWEEN;
+                }
+                emit(consumer, line, position, position + 1);
+            } else if (Character.isWhitespace(c)) {
+                if (state == IN_WORD) {
+                    emitTrimmed(consumer, line, start, position);
+                    state = BETWEEN;
+                }
+            } else if (lexicalAction.isSign(c) && !(state == IN_WORD && lexicalAction.isExponentSign(buffer[start], buffer[position - 1]))) {
+                if (state == IN_WORD) {
+                    emitTrimmed(consumer, line, start, position);
+                    state = BETWEEN;
+                }
+                if (lexicalAction.endsOperand(lastKind)) {
+                    emit(consumer, line, position, position + 1);
+                } else {
+                    state = IN_WORD;
+                    start = position;
+                }
+            } else if (state == BETWEEN) {
+                state = IN_WORD;
+                start = position;
+            } else if (position - start == 1 && lexicalAction.isSign(buffer[start]) && c != '.' && !lexicalAction.isDigit(c)) {
+                // a sign that does not start a number is an operator of its own
+                emit(consumer, line, start, position);
+                start = position;
+            }
+            position++;
+        }
+
+        if (lineLength > 0) {
+            if (state != BETWEEN) {
+                emitTrimmed(consumer, line, start, position);
+            }
+            consumer.endLine(line);
+        }
+    }
+
+    // Only valid while the consumer is inside token().
+    public String lexeme() {
+        return new String(buffer, lexemeStart, lexemeEnd - lexemeStart);
+    }
+
+    public CharSequence lexemeView() {
+        return window.subSequence(lexemeStart, lexemeEnd);
+    }
+
+    public char[] lexemeBuffer() {
+        return buffer;
+    }
+
+    public int lexemeOffset() {
+        return lexemeStart;
+    }
+
+    // String.trim() semantics: the old lexemeSplit trimmed every lexeme before tokenizing it
+    private void emitTrimmed(tokenConsumer consumer, int line, int from, int to) {
+        while (from < to && buffer[from] <= ' ') from++;
+        while (to > from && buffer[to - 1] <= ' ') to--;
+        if (to > from) {
+            emit(consumer, line, from, to);
+        }
+    }
+
+    private void emit(tokenConsumer consumer, int line, int from, int to) {
+        lexemeStart = from;
+        lexemeEnd = to;
+        lastKind = lexicalAction.tokenKind(window, from, to);
+        consumer.token(lastKind, line, bufferOffset + from, to - from);
+    }
+
+    // Drops everything before keep and grows the window if a single lexeme fills it.
+    // Returns how far the retained chars moved.
+    private int compact(int keep) {
+        if (keep == 0 && limit == buffer.length) {
+            char[] grown = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, limit);
+            buffer = grown;
+            window = CharBuffer.wrap(buffer);
+        } else if (keep > 0) {
+            System.arraycopy(buffer, keep, buffer, 0, limit - keep);
+            bufferOffset += keep;
+            limit -= keep;
+        }
+        return keep;
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+}
@@ -0,0 +1,202 @@
+package com.prismx.model;
+
+import java.util.Arrays;
+
+// Variables are interned once to int ids through an open-addressing table that can probe
+// straight from a token's chars. Each id has one binding slot holding its type ordinal and the
+// scope it was declared in. A binding only counts while that scope is still open, so pushScope(),
+// popScope() and clear() are O(1): closing a scope just makes its bindings stale.
+// That single slot is enough because a name may not be redeclared while it is visible.
+public class symbolTable {
+    private static final int NONE = -1;
+
+    private String[] names;
+    private int[] hashes;
+    private int nameCount;
+    private int[] slots;
+
+    private byte[] types;
+    private int[] boundSerial;
+    private int[] boundDepth;
+
+    private int[] openSerials;
+    private int depth;
+    private int nextSerial;
+
+    private projectSymbols project;
+    private int file;
+
+    public symbolTable() {
+        this(64);
+    }
+
+    public symbolTable(int expectedNames) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedNames * 2 - 1)) << 1;
+        this.slots = new int[capacity];
+        this.names = new String[Math.max(4, expectedNames)];
+        this.hashes = new int[names.length];
+        this.types = new byte[names.length];
+        this.boundSerial = new int[names.length];
+        this.boundDepth = new int[names.length];
+        this.openSerials = new int[8];
+        this.openSerials[0] = nextSerial = 1;
+    }
+
+    // ---- interning ----
+
+    public int intern(String name) {
+        int id = find(name);
+        return id != NONE ? id : add(name, name.hashCode());
+    }
+
+    public int intern(tokenStream tokens, int token) {
+        int id = find(tokens, token);
+        return id != NONE ? id : add(tokens.lexeme(token), tokens.lexemeHash(token));
+    }
+
+    // -1 when the name was never interned, which also means it was never declared
+    public int find(String name) {
+        int hash = name.hashCode();
+        int mask = slots.length - 1;
+        for (int i = spread(hash) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (hashes[id] == hash && names[id].equals(name)) return id;
+        }
+        return NONE;
+    }
+
+    public int find(tokenStream tokens, int token) {
+        int hash = tokens.lexemeHash(token);
+        int mask = slots.length - 1;
+        for (int i = spread(hash) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            int id = slots[i] - 1;
+            if (hashes[id] == hash && tokens.lexemeEquals(token, names[id])) return id;
+        }
+        return NONE;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    private int add(String name, int hash) {
+        if (nameCount == names.length) {
+            int capacity = nameCount * 2;
+            names = Arrays.copyOf(names, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            types = Arrays.copyOf(types, capacity);
+            boundSerial = Arrays.copyOf(boundSerial, capacity);
+            boundDepth = Arrays.copyOf(boundDepth, capacity);
+        }
+        if ((nameCount + 1) * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        int id = nameCount++;
+        names[id] = name;
+        hashes[id] = hash;
+        insertSlot(id);
+        return id;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int id = 0; id < nameCount; id++) {
+            insertSlot(id);
+        }
+    }
+
+    private void insertSlot(int id) {
+        int mask = slots.length - 1;
+        int i = spread(hashes[id]) & mask;
+        while (slots[i] != 0) i = (i + 1) & mask;
+        slots[i] = id + 1;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    // ---- bindings ----
+
+    public boolean isDeclared(int id) {
+        if (id == NONE) return false;
+        int serial = boundSerial[id];
+        int boundAt = boundDepth[id];
+        return serial != 0 && boundAt <= depth && openSerials[boundAt] == serial;
+    }
+
+    // false if the name is already visible (Java forbids redeclaring it in a nested block)
+    public boolean declare(int id, dataType type) {
+        if (isDeclared(id)) return false;
+        types[id] = (byte) type.ordinal();
+        boundSerial[id] = openSerials[depth];
+        boundDepth[id] = depth;
+        return true;
+    }
+
+    public dataType typeOf(int id) {
+        return isDeclared(id) ? dataType.fromOrdinal(types[id]) : null;
+    }
+
+    public boolean isDeclared(String name) {
+        return isDeclared(find(name));
+    }
+
+    public boolean declare(String name, dataType type) {
+        return declare(intern(name), type);
+    }
+
+    public dataType typeOf(String name) {
+        return typeOf(find(name));
+    }
+
+    // ---- project mode ----
+
+    // Names that no scope of this file declares then resolve to the project's other files.
+    public void setProject(projectSymbols project, int file) {
+        this.project = project;
+        this.file = file;
+    }
+
+    // Type of the name at token as this file sees it there; null when it is not declared.
+    public dataType resolve(tokenStream tokens, int token) {
+        dataType type = typeOf(find(tokens, token));
+        if (type != null || project == null) return type;
+        return project.typeElsewhere(tokens.lexeme(token), file);
+    }
+
+    // The other file's declaration that a top-level declaration of id here repeats, or null.
+    projectSymbols.declaration conflict(int id) {
+        if (project == null || depth != 0) return null;
+        return project.ownerElsewhere(names[id], file);
+    }
+
+    String projectFileName(int file) {
+        return project.fileName(file);
+    }
+
+    // ---- scopes ----
+
+    public void pushScope() {
+        if (++depth == openSerials.length) {
+            openSerials = Arrays.copyOf(openSerials, depth * 2);
+        }
+        openSerials[depth] = ++nextSerial;
+    }
+
+    public boolean popScope() {
+        if (depth == 0) return false;
+        depth--;
+        return true;
+    }
+
+    public int scopeDepth() {
+        return depth;
+    }
+
+    // Drops every binding (names stay interned).
+    public void clear() {
+        depth = 0;
+        openSerials[0] = ++nextSerial;
+    }
+}
@@ -1,107 +1,339 @@
 package com.prismx.model;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
+import java.util.Arrays;
 
 public class syntaxAction {
-    private HashMap<Integer, ArrayList<String>> processedTokens;
-    private HashMap<Integer, ArrayList<String>> processedLexicals;
-    private HashMap<Integer, String> errors;
+    private tokenStream tokens;
+    private diagnosticSink diagnostics;
     private StringBuilder content;
+    private tracer trace = tracer.NONE;
+    private phaseMetrics metrics = new phaseMetrics("syntax");
+    private boolean recovering;
+    private projectSymbols project;
+    private int file;
 
-    public syntaxAction(HashMap<Integer, ArrayList<String>> processedTokens, HashMap<Integer, ArrayList<String>> processedLexicals) {
-        this.processedTokens = processedTokens;
-        this.processedLexicals = processedLexicals;
-        this.errors = new HashMap<>();
+    public syntaxAction(tokenStream tokens) {
+        this.tokens = tokens;
+        this.diagnostics = new diagnosticSink();
         this.content = new StringBuilder();
     }
 
+    public void setTracer(tracer trace) {
+        this.trace = trace;
+    }
+
+    // Recovering mode checks every statement of a line instead of stopping at the line's first
+    // problem; see checkStatements().
+    public void setRecovering(boolean recovering) {
+        this.recovering = recovering;
+    }
+
+    // Project mode: this is file number file of project; see projectSymbols.
+    public void setProject(projectSymbols project, int file) {
+        this.project = project;
+        this.file = file;
+    }
+
     public void analyzeSyntax() {
-        errors.clear();
-        System.out.println("\n--- SYNTAX DEBUGGING ---");
-
-        HashSet<String> declaredVariables = new HashSet<>();
-
-        for (Map.Entry<Integer, ArrayList<String>> entry : processedTokens.entrySet()) {
-            int lineNumber = entry.getKey();
-            ArrayList<String> tokens = entry.getValue();
-            ArrayList<String> lexemes = processedLexicals.get(lineNumber);
-            try {
-                String firstToken = tokens.get(0);
-                if (firstToken.equals("<data_type>")) {
-                    checkDeclaration(tokens, lexemes, declaredVariables);
-                } else if (firstToken.equals("<identifier>")) {
-                    checkAssignment(tokens, lexemes, declaredVariables);
-                } else if (firstToken.equals("<error>")) {
-                    throw new Exception("Lexical Error detected: Invalid symbol '" + lexemes.get(0) + "'");
-                } else {
-                    throw new Exception("Invalid Statement Start. Expected Data Type or Identifier, found '" + lexemes.get(0) + "'");
-                }
+        analyzeSyntax(analysisProgress.NONE);
+    }
 
-                System.out.println("Line " + lineNumber + ": Syntax Correct");
+    // Throws CancellationException once progress reports the run as cancelled.
+    public void analyzeSyntax(analysisProgress progress) {
+        diagnostics.clear();
+        metrics = new phaseMetrics("syntax");
+        metrics.start();
+        int traceLevel = trace.level(diagnostic.SYNTAX);
+        if (traceLevel > tracer.OFF) trace.trace(diagnostic.SYNTAX, "--- SYNTAX DEBUGGING ---");
+
+        symbolTable declaredVariables = new symbolTable();
+        declaredVariables.setProject(project, file);
+        openBlocks openBlocks = new openBlocks();
+        expressionTree expressions = new expressionTree();
+        statements statements = recovering ? new statements() : null;
+
+        for (int line = 0; line < tokens.lineCount(); line++) {
+            if (line % analysisProgress.INTERVAL == 0) progress.checkpoint(line, tokens.lineCount());
+            int lineNumber = tokens.lineNumber(line);
+            int reported = diagnostics.size();
+            boolean passed;
+            if (recovering) {
+                passed = checkStatements(tokens, line, statements, declaredVariables, expressions, openBlocks, diagnostics);
+            } else {
+                passed = checkLine(tokens, line, declaredVariables, expressions, diagnostics);
+                if (passed) openBlocks.track(tokens, line);
+            }
+
+            if (passed) {
+                if (traceLevel >= tracer.ALL) trace.trace(diagnostic.SYNTAX, "Line " + lineNumber + ": Syntax Correct");
                 content.append("Line " + lineNumber + ": Syntax Correct\n");
+            } else if (traceLevel >= tracer.ERRORS) {
+                for (int d = reported; d < diagnostics.size(); d++) {
+                    trace.trace(diagnostic.SYNTAX, "Line " + lineNumber + " Error: " + diagnostics.message(d));
+                }
+            }
+        }
 
-            } catch (Exception e) {
-                String errorMsg = e.getMessage();
-                errors.put(lineNumber, errorMsg);
-                System.err.println("Line " + lineNumber + " Error: " + errorMsg);
+        for (int i = 0; i < openBlocks.count(); i++) {
+            reportUnclosed(openBlocks.line(i), diagnostics);
+            if (traceLevel >= tracer.ERRORS) {
+                trace.trace(diagnostic.SYNTAX, "Line " + openBlocks.line(i) + " Error: " + diagnostics.message(diagnostics.size() - 1));
             }
         }
+        metrics.setLines(tokens.lineCount());
+        metrics.countErrors(diagnostics);
+        metrics.finish();
+        progress.linesDone(tokens.lineCount(), tokens.lineCount());
     }
 
-    private void checkDeclaration(ArrayList<String> tokens, ArrayList<String> lexemes, HashSet<String> declaredVariables) throws Exception {
-        if (tokens.size() < 3) throw new Exception("Statement incomplete. Minimum declaration is 'type variable;'");
+    // Line numbers of the '{' still open, innermost last. Fed every line that passed checkLine(),
+    // so a '}' here always has a '{' to close.
+    static final class openBlocks {
+        private int[] lines = new int[8];
+        private int count;
+
+        void track(tokenStream tokens, int line) {
+            if (!isBlockLine(tokens, line)) return;
+            for (int t = tokens.firstToken(line); t < tokens.endToken(line); t++) {
+                if (tokens.kind(t) == tokenStream.OPEN_BRACE) {
+                    if (count == lines.length) lines = Arrays.copyOf(lines, count * 2);
+                    lines[count++] = tokens.lineNumber(line);
+                } else {
+                    count--;
+                }
+            }
+        }
+
+        int count() {
+            return count;
+        }
+
+        int line(int index) {
+            return lines[index];
+        }
+    }
+
+    // The statements of one line in recovering mode: each runs up to and including a ';', and the
+    // last one may have none. Each is copied into a one-line stream, so checkLine() and
+    // semanticsAction.analyzeLine() take it as if it were the whole line; what they report goes
+    // to found() and report() moves it over with columns counted from the start of the real line.
+    static final class statements {
+        private final tokenStream statement = new tokenStream(16, 1);
+        private final diagnosticSink found = new diagnosticSink(4);
+        private tokenStream tokens;
+        private int line;
+        private int next;
+        private int offset;
+        private int error;
+
+        void reset(tokenStream tokens, int line) {
+            this.tokens = tokens;
+            this.line = line;
+            this.next = tokens.firstToken(line);
+        }
+
+        boolean next() {
+            int end = tokens.endToken(line);
+            if (next >= end) return false;
+            statement.clear();
+            offset = next - tokens.firstToken(line);
+            error = -1;
+            while (next < end) {
+                byte kind = tokens.kind(next);
+                if (kind == tokenStream.ERROR && error < 0) error = statement.tokenCount();
+                statement.addToken(tokens, next++);
+                if (kind == tokenStream.DELIMITER) break;
+            }
+            statement.endLine(tokens.lineNumber(line));
+            return true;
+        }
+
+        tokenStream statement() {
+            return statement;
+        }
+
+        // position of the statement's first token in its line
+        int offset() {
+            return offset;
+        }
 
-        if (!tokens.get(1).equals("<identifier>"))
-            throw new Exception("Expected variable name, found: " + lexemes.get(1));
+        // position in the statement of its first invalid token, -1 if there is none
+        int errorAt() {
+            return error;
+        }
 
-        String varName = lexemes.get(1);
-        declaredVariables.add(varName);
-        String thirdToken = tokens.get(2);
+        diagnosticSink found() {
+            return found;
+        }
 
-        if (thirdToken.equals("<delimiter>")) {
-            return;
+        void report(diagnosticSink diagnostics) {
+            for (int i = 0; i < found.size(); i++) {
+                diagnostic d = found.get(i);
+                int column = d.column() == 0 ? 0 : d.column() + offset;
+                diagnostics.report(d.line(), column, d.phase(), d.code(), d.arguments());
+            }
+            found.clear();
         }
-        else if (thirdToken.equals("<assignment_operator>")) {
-            if (tokens.size() < 5) throw new Exception("Initialization statement incomplete.");
 
-            if (!tokens.get(3).equals("<value>")) {
-                if (tokens.get(3).equals("<delimiter>")) throw new Exception("Unexpected ';'. Expected a value.");
-                throw new Exception("Expected a value, found: " + lexemes.get(3));
+        void discard() {
+            found.clear();
+        }
+    }
+
+    // Recovering counterpart of checkLine(): panic mode on ';'. A statement holding an invalid
+    // token is reported and skipped up to its ';', any other statement is checked on its own, so
+    // one problem costs the rest of its statement and not the rest of the line or file.
+    // Returns false if any statement of the line failed.
+    static boolean checkStatements(tokenStream tokens, int line, statements statements, symbolTable declaredVariables,
+                                   expressionTree expressions, openBlocks openBlocks, diagnosticSink diagnostics) {
+        if (tokens.lineSize(line) == 0) return checkLine(tokens, line, declaredVariables, expressions, diagnostics);
+        boolean passed = true;
+        statements.reset(tokens, line);
+        while (statements.next()) {
+            tokenStream statement = statements.statement();
+            int error = statements.errorAt();
+            if (error >= 0) {
+                fail(diagnostics, tokens, line, statements.offset() + error + 1, diagnosticCode.LEXICAL_ERROR, statement.lineLexeme(0, error));
+                passed = false;
+            } else if (checkLine(statement, 0, declaredVariables, expressions, statements.found())) {
+                openBlocks.track(statement, 0);
+            } else {
+                statements.report(diagnostics);
+                passed = false;
             }
-            if (!tokens.get(4).equals("<delimiter>"))
-                throw new Exception("Expected ';', found: " + lexemes.get(4));
+        }
+        return passed;
+    }
+
+    static void reportUnclosed(int lineNumber, diagnosticSink diagnostics) {
+        diagnostics.report(lineNumber, 1, diagnostic.SYNTAX, diagnosticCode.UNCLOSED_BLOCK);
+    }
+
+    static boolean isBlockLine(tokenStream tokens, int line) {
+        if (tokens.lineSize(line) == 0) return false;
+        byte firstToken = tokens.kind(tokens.firstToken(line));
+        return firstToken == tokenStream.OPEN_BRACE || firstToken == tokenStream.CLOSE_BRACE;
+    }
+
+    // One line of the file; declaredVariables holds the names visible above it and takes this line's declaration or block.
+    // expressions is scratch space for the right-hand side. Returns false after reporting the line's first problem to diagnostics.
+    static boolean checkLine(tokenStream tokens, int line, symbolTable declaredVariables, expressionTree expressions, diagnosticSink diagnostics) {
+        if (tokens.lineSize(line) == 0) return fail(diagnostics, tokens, line, 0, diagnosticCode.TOKEN_MISSING, 0, 0);
+        byte firstToken = tokens.lineKind(line, 0);
+        if (firstToken == tokenStream.DATA_TYPE) {
+            return checkDeclaration(tokens, line, declaredVariables, expressions, diagnostics);
+        } else if (firstToken == tokenStream.IDENTIFIER) {
+            return checkAssignment(tokens, line, declaredVariables, expressions, diagnostics);
+        } else if (firstToken == tokenStream.OPEN_BRACE || firstToken == tokenStream.CLOSE_BRACE) {
+            return checkBlock(tokens, line, declaredVariables, diagnostics);
+        } else if (firstToken == tokenStream.ERROR) {
+            return fail(diagnostics, tokens, line, 1, diagnosticCode.LEXICAL_ERROR, tokens.lineLexeme(line, 0));
+        } else {
+            return fail(diagnostics, tokens, line, 1, diagnosticCode.INVALID_STATEMENT_START, tokens.lineLexeme(line, 0));
+        }
+    }
+
+    private static boolean checkDeclaration(tokenStream tokens, int line, symbolTable declaredVariables, expressionTree expressions,
+                                            diagnosticSink diagnostics) {
+        int size = tokens.lineSize(line);
+        if (size < 3) return fail(diagnostics, tokens, line, 0, diagnosticCode.INCOMPLETE_DECLARATION);
+
+        if (tokens.lineKind(line, 1) != tokenStream.IDENTIFIER)
+            return fail(diagnostics, tokens, line, 2, diagnosticCode.EXPECTED_VARIABLE_NAME, tokens.lineLexeme(line, 1));
+
+        int nameToken = tokens.lineToken(line, 1);
+        declaredVariables.declare(declaredVariables.intern(tokens, nameToken), dataType.of(tokens, tokens.lineToken(line, 0)));
+        byte thirdToken = tokens.lineKind(line, 2);
+
+        if (thirdToken == tokenStream.DELIMITER) {
+            return true;
+        }
+        else if (thirdToken == tokenStream.ASSIGNMENT_OPERATOR) {
+            if (size < 5) return fail(diagnostics, tokens, line, 0, diagnosticCode.INCOMPLETE_INITIALIZATION);
+            return checkExpression(tokens, line, 3, expressions, diagnosticCode.INCOMPLETE_INITIALIZATION, diagnostics);
         }
         else {
-            throw new Exception("Expected ';' or '=', found: " + lexemes.get(2));
+            return fail(diagnostics, tokens, line, 3, diagnosticCode.EXPECTED_DELIMITER_OR_ASSIGNMENT, tokens.lineLexeme(line, 2));
         }
     }
 
-    private void checkAssignment(ArrayList<String> tokens, ArrayList<String> lexemes, HashSet<String> declaredVariables) throws Exception {
-        if (tokens.size() < 4) throw new Exception("Statement incomplete.");
+    private static boolean checkAssignment(tokenStream tokens, int line, symbolTable declaredVariables, expressionTree expressions,
+                                           diagnosticSink diagnostics) {
+        if (tokens.lineSize(line) < 4) return fail(diagnostics, tokens, line, 0, diagnosticCode.INCOMPLETE_STATEMENT);
 
-        String varName = lexemes.get(0);
-        if (!declaredVariables.contains(varName)) {
-            throw new Exception("Variable '" + varName + "' has not been declared!");
+        int nameToken = tokens.lineToken(line, 0);
+        if (declaredVariables.resolve(tokens, nameToken) == null) {
+            return fail(diagnostics, tokens, line, 1, diagnosticCode.UNDECLARED_VARIABLE, tokens.lexeme(nameToken));
         }
 
-        if (!tokens.get(1).equals("<assignment_operator>"))
-            throw new Exception("Expected '=', found: " + lexemes.get(1));
+        if (tokens.lineKind(line, 1) != tokenStream.ASSIGNMENT_OPERATOR)
+            return fail(diagnostics, tokens, line, 2, diagnosticCode.EXPECTED_ASSIGNMENT, tokens.lineLexeme(line, 1));
+
+        return checkExpression(tokens, line, 2, expressions, diagnosticCode.INCOMPLETE_STATEMENT, diagnostics);
+    }
 
-        if (!tokens.get(2).equals("<value>")) {
-            if (tokens.get(2).equals("<delimiter>")) throw new Exception("Unexpected ';'. Expected a value.");
-            throw new Exception("Expected a value, found: " + lexemes.get(2));
+    // The expression from position from of the line up to the ';' that must follow it. A line
+    // that ends before the expression or its ';' is complete is reported as incomplete.
+    private static boolean checkExpression(tokenStream tokens, int line, int from, expressionTree expressions, diagnosticCode incomplete,
+                                           diagnosticSink diagnostics) {
+        int first = tokens.firstToken(line);
+        int end = tokens.endToken(line);
+        if (expressions.parse(tokens, first + from, end) < 0) {
+            int at = expressions.errorToken();
+            diagnosticCode code = expressions.errorCode();
+            if (code == null) return fail(diagnostics, tokens, line, 0, incomplete);
+            if (code == diagnosticCode.EXPECTED_VALUE || code == diagnosticCode.EXPECTED_CLOSE_PAREN) {
+                return fail(diagnostics, tokens, line, at - first + 1, code, tokens.lexeme(at));
+            }
+            return fail(diagnostics, tokens, line, at - first + 1, code);
         }
+        int after = expressions.end();
+        if (after == end) return fail(diagnostics, tokens, line, 0, incomplete);
+        if (tokens.kind(after) != tokenStream.DELIMITER)
+            return fail(diagnostics, tokens, line, after - first + 1, diagnosticCode.EXPECTED_DELIMITER, tokens.lexeme(after));
+        return true;
+    }
+
+    // "{" and "}" sit on their own lines; each "{" opens a scope and each "}" closes the innermost one.
+    private static boolean checkBlock(tokenStream tokens, int line, symbolTable declaredVariables, diagnosticSink diagnostics) {
+        int depth = declaredVariables.scopeDepth();
+        int first = tokens.firstToken(line);
+        for (int t = first; t < tokens.endToken(line); t++) {
+            byte kind = tokens.kind(t);
+            if (kind == tokenStream.OPEN_BRACE) {
+                depth++;
+            } else if (kind != tokenStream.CLOSE_BRACE) {
+                return fail(diagnostics, tokens, line, t - first + 1, diagnosticCode.EXPECTED_NEW_LINE_AFTER_BRACE, tokens.lexeme(t));
+            } else if (depth-- == 0) {
+                return fail(diagnostics, tokens, line, t - first + 1, diagnosticCode.UNMATCHED_CLOSE_BRACE);
+            }
+        }
+        for (int t = first; t < tokens.endToken(line); t++) {
+            if (tokens.kind(t) == tokenStream.OPEN_BRACE) {
+                declaredVariables.pushScope();
+            } else {
+                declaredVariables.popScope();
+            }
+        }
+        return true;
+    }
+
+    private static boolean fail(diagnosticSink diagnostics, tokenStream tokens, int line, int column, diagnosticCode code, Object... arguments) {
+        diagnostics.report(tokens.lineNumber(line), column, diagnostic.SYNTAX, code, arguments);
+        return false;
+    }
+
+    public diagnosticSink getDiagnostics() {
+        return diagnostics;
+    }
 
-        if (!tokens.get(3).equals("<delimiter>"))
-            throw new Exception("Expected ';', found: " + lexemes.get(3));
+    public phaseMetrics getMetrics() {
+        return metrics;
     }
 
-    public HashMap<Integer, String> getErrors() {
-        return errors;
+    public lineMap<String> getErrors() {
+        return diagnostics.errorsByLine();
     }
 
     public String getContent() { return content.toString(); }
-}
\ No newline at end of file
+}
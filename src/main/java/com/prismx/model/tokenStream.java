@@ -0,0 +1,240 @@
+package com.prismx.model;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+public class tokenStream {
+    public static final byte DATA_TYPE = 0;
+    public static final byte IDENTIFIER = 1;
+    public static final byte VALUE = 2;
+    public static final byte ASSIGNMENT_OPERATOR = 3;
+    public static final byte DELIMITER = 4;
+    public static final byte ERROR = 5;
+    public static final byte OPEN_BRACE = 6;
+    public static final byte CLOSE_BRACE = 7;
+    public static final byte OPERATOR = 8;
+    public static final byte OPEN_PAREN = 9;
+    public static final byte CLOSE_PAREN = 10;
+    public static final int KIND_COUNT = 11;
+
+    private static final String[] KIND_NAMES = {
+            "<data_type>", "<identifier>", "<value>", "<assignment_operator>", "<delimiter>", "<error>",
+            "<open_brace>", "<close_brace>", "<operator>", "<open_paren>", "<close_paren>"
+    };
+
+    // one entry per token
+    private byte[] kinds;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private int tokenCount;
+
+    // lexeme text; tokens with the same short lexeme share one copy
+    private lexemePool pool;
+
+    // one entry per non-empty source line, in line order
+    private int[] lineNumbers;
+    private int[] lineFirstToken;
+    private int lineCount;
+    private int openLineFirstToken;
+
+    public tokenStream() {
+        this(64, 16);
+    }
+
+    public tokenStream(int expectedTokens, int expectedLines) {
+        int tokens = Math.max(4, expectedTokens);
+        this.kinds = new byte[tokens];
+        this.starts = new int[tokens];
+        this.lengths = new int[tokens];
+        this.lines = new int[tokens];
+        // about two chars a token once the repeated ones are shared; grows when a file needs more
+        this.pool = new lexemePool(tokens * 2, lexemePool.DEFAULT_ENTRIES);
+        this.lineNumbers = new int[Math.max(4, expectedLines)];
+        this.lineFirstToken = new int[Math.max(4, expectedLines) + 1];
+    }
+
+    public static String kindName(byte kind) {
+        return KIND_NAMES[kind];
+    }
+
+    public void addToken(byte kind, int line, char[] source, int offset, int length) {
+        if (tokenCount == kinds.length) {
+            int capacity = tokenCount * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            lines = Arrays.copyOf(lines, capacity);
+        }
+        kinds[tokenCount] = kind;
+        starts[tokenCount] = store(kind, source, offset, length);
+        lengths[tokenCount] = length;
+        lines[tokenCount] = line;
+        tokenCount++;
+    }
+
+    // values and invalid tokens rarely repeat, so they skip the lookup and leave the bounded
+    // intern table to the names and keywords that do
+    private int store(byte kind, char[] source, int offset, int length) {
+        return kind == VALUE || kind == ERROR ? pool.append(source, offset, length) : pool.add(source, offset, length);
+    }
+
+    public void addToken(byte kind, int line, String lexeme) {
+        addToken(kind, line, lexeme.toCharArray(), 0, lexeme.length());
+    }
+
+    // Copies token of other to the end of this stream, on the same line.
+    public void addToken(tokenStream other, int token) {
+        addToken(other, token, other.lines[token]);
+    }
+
+    // Copies token of other to the end of this stream, on line line.
+    public void addToken(tokenStream other, int token, int line) {
+        addToken(other.kinds[token], line, other.pool.chars(), other.starts[token], other.lengths[token]);
+    }
+
+    // Closes the line that the tokens added since the previous endLine() belong to.
+    public void endLine(int line) {
+        if (lineCount == lineNumbers.length) {
+            lineNumbers = Arrays.copyOf(lineNumbers, lineCount * 2);
+            lineFirstToken = Arrays.copyOf(lineFirstToken, lineCount * 2 + 1);
+        }
+        lineNumbers[lineCount] = line;
+        lineFirstToken[lineCount] = openLineFirstToken;
+        lineCount++;
+        lineFirstToken[lineCount] = tokenCount;
+        openLineFirstToken = tokenCount;
+    }
+
+    // Drops every token and line but keeps the arrays, so one stream can be refilled line after line.
+    public void clear() {
+        tokenCount = 0;
+        pool.clear();
+        lineCount = 0;
+        openLineFirstToken = 0;
+        lineFirstToken[0] = 0;
+    }
+
+    // Grows the arrays to hold at least tokens tokens and lines lines in all, so appending many
+    // streams copies them once.
+    public void ensureCapacity(int tokens, int lines) {
+        if (tokens > kinds.length) {
+            kinds = Arrays.copyOf(kinds, tokens);
+            starts = Arrays.copyOf(starts, tokens);
+            lengths = Arrays.copyOf(lengths, tokens);
+            this.lines = Arrays.copyOf(this.lines, tokens);
+        }
+        if (lines >= lineNumbers.length) {
+            lineNumbers = Arrays.copyOf(lineNumbers, lines + 1);
+            lineFirstToken = Arrays.copyOf(lineFirstToken, lines + 2);
+        }
+    }
+
+    // Appends every token and line of other after this stream's own; other must continue in line order.
+    public void append(tokenStream other) {
+        int tokens = tokenCount + other.tokenCount;
+        ensureCapacity(tokens, lineCount + other.lineCount);
+        System.arraycopy(other.kinds, 0, kinds, tokenCount, other.tokenCount);
+        System.arraycopy(other.lengths, 0, lengths, tokenCount, other.tokenCount);
+        System.arraycopy(other.lines, 0, lines, tokenCount, other.tokenCount);
+        // through this stream's pool, so repeated lexemes of other share its copies
+        char[] otherChars = other.pool.chars();
+        for (int i = 0; i < other.tokenCount; i++) {
+            starts[tokenCount + i] = store(other.kinds[i], otherChars, other.starts[i], other.lengths[i]);
+        }
+        System.arraycopy(other.lineNumbers, 0, lineNumbers, lineCount, other.lineCount);
+        for (int i = 1; i <= other.lineCount; i++) {
+            lineFirstToken[lineCount + i] = other.lineFirstToken[i] + tokenCount;
+        }
+        tokenCount = tokens;
+        lineCount += other.lineCount;
+        openLineFirstToken = tokenCount;
+    }
+
+    public int tokenCount() {
+        return tokenCount;
+    }
+
+    public byte kind(int token) {
+        return kinds[token];
+    }
+
+    public int line(int token) {
+        return lines[token];
+    }
+
+    public int start(int token) {
+        return starts[token];
+    }
+
+    public int length(int token) {
+        return lengths[token];
+    }
+
+    // The pool's canonical instance for short lexemes, so names and keywords are not copied per call.
+    public String lexeme(int token) {
+        return pool.string(starts[token], lengths[token]);
+    }
+
+    // Same value as lexeme(token).hashCode(), without creating the String.
+    public int lexemeHash(int token) {
+        return lexemePool.hash(pool.chars(), starts[token], lengths[token]);
+    }
+
+    public boolean lexemeEquals(int token, String text) {
+        int length = lengths[token];
+        if (length != text.length()) {
+            return false;
+        }
+        int start = starts[token];
+        char[] chars = pool.chars();
+        for (int i = 0; i < length; i++) {
+            if (chars[start + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int lineCount() {
+        return lineCount;
+    }
+
+    public int lineNumber(int lineIndex) {
+        return lineNumbers[lineIndex];
+    }
+
+    public int firstToken(int lineIndex) {
+        return lineFirstToken[lineIndex];
+    }
+
+    public int endToken(int lineIndex) {
+        return lineFirstToken[lineIndex + 1];
+    }
+
+    public int lineSize(int lineIndex) {
+        return lineFirstToken[lineIndex + 1] - lineFirstToken[lineIndex];
+    }
+
+    // Position-in-line accessors; they fail the same way ArrayList.get() did when a line is too short.
+    public int lineToken(int lineIndex, int position) {
+        return lineFirstToken[lineIndex] + Objects.checkIndex(position, lineSize(lineIndex));
+    }
+
+    public byte lineKind(int lineIndex, int position) {
+        return kinds[lineToken(lineIndex, position)];
+    }
+
+    public String lineLexeme(int lineIndex, int position) {
+        return lexeme(lineToken(lineIndex, position));
+    }
+
+    public boolean lineHasKind(int lineIndex, byte kind) {
+        for (int i = lineFirstToken[lineIndex]; i < endToken(lineIndex); i++) {
+            if (kinds[i] == kind) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,43 @@
+package com.prismx.model;
+
+// Debug trace of the analysis phases. Each phase asks level() once per run and only builds a
+// message when the level asks for it, so with NONE (the default everywhere) a run formats and
+// prints nothing. Phases are diagnostic.LEXICAL, SYNTAX and SEMANTIC.
+public interface tracer {
+    int OFF = 0;
+    // lines with a problem
+    int ERRORS = 1;
+    // every line, including the correct ones
+    int ALL = 2;
+
+    tracer NONE = new tracer() {
+        @Override
+        public int level(byte phase) {
+            return OFF;
+        }
+
+        @Override
+        public void trace(byte phase, String message) {}
+    };
+
+    int level(byte phase);
+
+    // Must be safe to call from several threads at once.
+    void trace(byte phase, String message);
+
+    // Same levels, with every message starting with prefix; batch runs use it to tell files apart.
+    default tracer prefixed(String prefix) {
+        tracer target = this;
+        return new tracer() {
+            @Override
+            public int level(byte phase) {
+                return target.level(phase);
+            }
+
+            @Override
+            public void trace(byte phase, String message) {
+                target.trace(phase, prefix + message);
+            }
+        };
+    }
+}
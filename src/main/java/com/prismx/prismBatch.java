@@ -0,0 +1,426 @@
+package com.prismx;
+
+import com.prismx.model.analysisCache;
+import com.prismx.model.analysisResult;
+import com.prismx.model.asyncTracer;
+import com.prismx.model.diagnosticSink;
+import com.prismx.model.metricsRegistry;
+import com.prismx.model.projectSymbols;
+import com.prismx.model.sourceFile;
+import com.prismx.model.sourceWatcher;
+import com.prismx.model.tokenStream;
+import com.prismx.model.tracer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+// Headless entry point: runs lexical -> syntax -> semantics over files and directory trees on a
+// fixed pool of workers and writes one JSON object per file (JSON Lines), in input order.
+// Nothing here touches JavaFX, so it runs from the plain classpath:
+//   java -cp target/classes com.prismx.prismBatch --jobs 8 src/
+public class prismBatch {
+    // the disk tier holds everything; memory only saves rereading files that repeat within a run
+    private static final long CACHE_MEMORY_BYTES = 64L << 20;
+    private static final String USAGE = "Usage: prismBatch [--jobs N] [--output FILE] [--trace FILE|-] [--trace-level LEVELS] [--metrics FILE|-] [--cache DIR] [--recover] [--project] [--watch [--debounce MS]] <file-or-directory>...";
+
+    public static void main(String[] args) {
+        int jobs = Runtime.getRuntime().availableProcessors();
+        String output = null;
+        String traceTarget = null;
+        String traceLevels = "all";
+        String metrics = null;
+        String cacheDirectory = null;
+        boolean recovering = false;
+        boolean project = false;
+        boolean watch = false;
+        long debounce = sourceWatcher.DEFAULT_DEBOUNCE_MILLIS;
+        List<String> inputs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if ((arg.equals("--jobs") || arg.equals("-j")) && i + 1 < args.length) {
+                try {
+                    jobs = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    jobs = 0;
+                }
+                if (jobs < 1) {
+                    System.err.println("--jobs expects a positive number, found: " + args[i]);
+                    System.exit(2);
+                }
+            } else if ((arg.equals("--output") || arg.equals("-o")) && i + 1 < args.length) {
+                output = args[++i];
+            } else if (arg.equals("--trace") && i + 1 < args.length) {
+                traceTarget = args[++i];
+            } else if (arg.equals("--trace-level") && i + 1 < args.length) {
+                traceLevels = args[++i];
+            } else if (arg.equals("--metrics") && i + 1 < args.length) {
+                metrics = args[++i];
+            } else if (arg.equals("--cache") && i + 1 < args.length) {
+                cacheDirectory = args[++i];
+            } else if (arg.equals("--recover")) {
+                recovering = true;
+            } else if (arg.equals("--project")) {
+                project = true;
+            } else if (arg.equals("--watch")) {
+                watch = true;
+            } else if (arg.equals("--debounce") && i + 1 < args.length) {
+                try {
+                    debounce = Long.parseLong(args[++i]);
+                } catch (NumberFormatException e) {
+                    debounce = -1;
+                }
+                if (debounce < 0) {
+                    System.err.println("--debounce expects milliseconds, found: " + args[i]);
+                    System.exit(2);
+                }
+            } else if (arg.equals("--help") || arg.equals("-h")) {
+                System.out.println(USAGE);
+                return;
+            } else if (arg.startsWith("-")) {
+                System.err.println("Unknown option: " + arg);
+                System.err.println(USAGE);
+                System.exit(2);
+            } else {
+                inputs.add(arg);
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        if (project && cacheDirectory != null) {
+            // a file's result then depends on every other file, which the cache key does not cover
+            System.err.println("--cache cannot be combined with --project");
+            System.exit(2);
+        }
+        if (watch && (project || cacheDirectory != null)) {
+            // every change is analyzed anyway, and one file's change would re-check the whole project
+            System.err.println("--watch cannot be combined with --project or --cache");
+            System.exit(2);
+        }
+
+        if (watch) {
+            watch(inputs, jobs, output, traceTarget, traceLevels, recovering, debounce);
+            return;
+        }
+
+        List<File> files = new ArrayList<>();
+        for (String input : inputs) {
+            try {
+                collectSources(new File(input), files);
+            } catch (IOException e) {
+                System.err.println("Could not read " + input + ": " + e.getMessage());
+                System.exit(2);
+            }
+        }
+
+        tracer trace = tracer.NONE;
+        if (traceTarget != null) {
+            try {
+                trace = asyncTracer.open(traceTarget, traceLevels);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Could not trace to " + traceTarget + ": " + e.getMessage());
+                System.exit(2);
+            }
+        }
+
+        analysisCache cache = null;
+        if (cacheDirectory != null) {
+            try {
+                cache = new analysisCache(CACHE_MEMORY_BYTES, new File(cacheDirectory));
+            } catch (IOException e) {
+                System.err.println("Could not use cache " + cacheDirectory + ": " + e.getMessage());
+                System.exit(2);
+            }
+        }
+
+        int failed;
+        PrintStream out = System.out;
+        try {
+            if (output != null) out = new PrintStream(output, "UTF-8");
+            failed = run(files, jobs, out, trace, cache, recovering, project);
+        } catch (IOException e) {
+            System.err.println("Could not write " + output + ": " + e.getMessage());
+            System.exit(2);
+            return;
+        } finally {
+            if (out != System.out) out.close();
+            if (trace instanceof asyncTracer) ((asyncTracer) trace).close();
+        }
+        if (metrics != null) writeMetrics(metrics);
+        System.err.println(files.size() + " file(s) analyzed, " + failed + " with errors."
+                + (cache == null ? "" : " " + cache.hits() + " served from " + cacheDirectory + "."));
+        System.exit(failed == 0 ? 0 : 1);
+    }
+
+    // Analyzes every file once, then again on each change, writing one JSON line per run (with its
+    // "millis") and one per deleted file. Runs until the process is stopped.
+    private static void watch(List<String> inputs, int jobs, String output, String traceTarget, String traceLevels,
+                              boolean recovering, long debounce) {
+        List<Path> roots = new ArrayList<>();
+        for (String input : inputs) roots.add(Path.of(input));
+        try {
+            PrintStream out = output == null ? System.out : new PrintStream(output, "UTF-8");
+            tracer trace = traceTarget == null ? tracer.NONE : asyncTracer.open(traceTarget, traceLevels);
+            if (trace instanceof asyncTracer) Runtime.getRuntime().addShutdownHook(new Thread(((asyncTracer) trace)::close));
+
+            sourceWatcher watcher = new sourceWatcher(roots, trace, recovering, jobs, debounce, new sourceWatcher.listener() {
+                @Override
+                public void analyzed(sourceFile source, analysisResult result, long nanos) {
+                    StringBuilder json = new StringBuilder(256);
+                    json.append("{\"file\":");
+                    appendString(json, source.getFile().getPath());
+                    json.append(",\"millis\":").append(nanos / 1_000_000);
+                    appendResult(json, result);
+                    print(json.append('}'));
+                }
+
+                @Override
+                public void removed(File file) {
+                    StringBuilder json = new StringBuilder("{\"file\":");
+                    appendString(json, file.getPath());
+                    print(json.append(",\"removed\":true}"));
+                }
+
+                @Override
+                public void failed(File file, Exception e) {
+                    StringBuilder json = new StringBuilder("{\"file\":");
+                    appendString(json, file.getPath());
+                    json.append(",\"error\":");
+                    appendString(json, String.valueOf(e.getMessage()));
+                    print(json.append('}'));
+                }
+
+                // workers of different files report concurrently
+                private void print(CharSequence line) {
+                    synchronized (out) {
+                        out.println(line);
+                        out.flush();
+                    }
+                }
+            });
+            System.err.println("Watching " + watcher.start() + " file(s) for changes.");
+            Thread.currentThread().join();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Could not watch: " + e.getMessage());
+            System.exit(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Per-phase totals over every file, as one JSON object; "-" is standard error.
+    private static void writeMetrics(String target) {
+        String json = metricsRegistry.toJson();
+        if (target.equals("-")) {
+            System.err.println(json);
+            return;
+        }
+        try {
+            Files.writeString(Path.of(target), json + "\n");
+        } catch (IOException e) {
+            System.err.println("Could not write " + target + ": " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    // .txt and .java files, like the file chooser; a directory is walked in path order
+    private static void collectSources(File input, List<File> files) throws IOException {
+        if (!input.isDirectory()) {
+            if (!input.isFile()) throw new IOException("No such file or directory");
+            files.add(input);
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(input.toPath())) {
+            walk.filter(Files::isRegularFile)
+                    .filter(path -> path.toString().endsWith(".txt") || path.toString().endsWith(".java"))
+                    .sorted()
+                    .forEach(path -> files.add(path.toFile()));
+        }
+    }
+
+    // At most jobs * 4 files are in flight, so memory stays flat however many files there are.
+    // In project mode every file's top-level declarations are collected first, then the files are
+    // analyzed against all of them.
+    private static int run(List<File> files, int jobs, PrintStream out, tracer trace, analysisCache cache, boolean recovering,
+                           boolean project) {
+        ExecutorService pool = Executors.newFixedThreadPool(jobs);
+        ArrayDeque<Future<fileResult>> pending = new ArrayDeque<>();
+        int failed = 0;
+        try {
+            projectSymbols symbols = project ? declare(files, pool, recovering) : null;
+            for (int i = 0; i < files.size(); i++) {
+                File file = files.get(i);
+                int index = i;
+                pending.add(pool.submit(() -> analyze(file, trace, cache, recovering, symbols, index)));
+                if (pending.size() >= jobs * 4) {
+                    failed += write(pending.poll(), out);
+                }
+            }
+            while (!pending.isEmpty()) {
+                failed += write(pending.poll(), out);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        out.flush();
+        return failed;
+    }
+
+    // A file that cannot be read declares nothing; analyze() reports it.
+    private static projectSymbols declare(List<File> files, ExecutorService pool, boolean recovering) {
+        List<String> names = new ArrayList<>(files.size());
+        for (File file : files) names.add(file.getPath());
+        projectSymbols symbols = new projectSymbols(names);
+
+        List<Future<?>> declared = new ArrayList<>(files.size());
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            int index = i;
+            declared.add(pool.submit(() -> {
+                try {
+                    symbols.declareFile(new sourceFile(file), index, recovering);
+                } catch (IOException | RuntimeException e) {
+                    // left to analyze()
+                }
+            }));
+        }
+        for (Future<?> future : declared) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while collecting declarations", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Collecting declarations failed", e.getCause());
+            }
+        }
+        return symbols;
+    }
+
+    private static int write(Future<fileResult> future, PrintStream out) {
+        try {
+            fileResult result = future.get();
+            out.println(result.json);
+            return result.clean ? 0 : 1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for results", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Analysis failed", e.getCause());
+        }
+    }
+
+    private static final class fileResult {
+        final String json;
+        final boolean clean;
+
+        fileResult(String json, boolean clean) {
+            this.json = json;
+            this.clean = clean;
+        }
+    }
+
+    // cache and project may be null; a file the cache already holds is neither analyzed nor traced again
+    static fileResult analyze(File file, tracer trace, analysisCache cache, boolean recovering, projectSymbols project, int index) {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"file\":");
+        appendString(json, file.getPath());
+        // workers trace concurrently, so every message names its file
+        tracer fileTrace = trace == tracer.NONE ? trace : trace.prefixed(file.getPath() + ": ");
+        try {
+            sourceFile source = new sourceFile(file);
+            analysisResult result = cache == null
+                    ? analysisResult.analyze(source, fileTrace, recovering, project, index)
+                    : cache.analyze(source, fileTrace, recovering);
+
+            appendResult(json, result);
+            json.append('}');
+            return new fileResult(json.toString(), result.isClean());
+        } catch (IOException | RuntimeException e) {
+            json.append(",\"error\":");
+            appendString(json, String.valueOf(e.getMessage()));
+            json.append('}');
+            return new fileResult(json.toString(), false);
+        }
+    }
+
+    private static void appendResult(StringBuilder json, analysisResult result) {
+        appendLexicalErrors(json, result.getTokens());
+        json.append(",\"syntaxErrors\":");
+        appendDiagnostics(json, result.getSyntaxDiagnostics());
+        json.append(",\"semanticErrors\":");
+        appendDiagnostics(json, result.getSemanticDiagnostics());
+    }
+
+    private static void appendLexicalErrors(StringBuilder json, tokenStream tokens) {
+        json.append(",\"lexicalErrors\":[");
+        int count = 0;
+        for (int line = 0; line < tokens.lineCount(); line++) {
+            for (int t = tokens.firstToken(line); t < tokens.endToken(line); t++) {
+                if (tokens.kind(t) != tokenStream.ERROR) continue;
+                if (count++ > 0) json.append(',');
+                json.append("{\"line\":").append(tokens.lineNumber(line))
+                        .append(",\"column\":").append(t - tokens.firstToken(line) + 1)
+                        .append(",\"lexeme\":");
+                appendString(json, tokens.lexeme(t));
+                json.append('}');
+            }
+        }
+        json.append(']');
+    }
+
+    // In line order; the sink keeps report order, where unclosed blocks come last.
+    private static void appendDiagnostics(StringBuilder json, diagnosticSink diagnostics) {
+        Integer[] order = new Integer[diagnostics.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Integer.compare(diagnostics.line(a), diagnostics.line(b)));
+
+        json.append('[');
+        for (int i = 0; i < order.length; i++) {
+            int d = order[i];
+            if (i > 0) json.append(',');
+            json.append("{\"line\":").append(diagnostics.line(d))
+                    .append(",\"column\":").append(diagnostics.column(d))
+                    .append(",\"code\":\"").append(diagnostics.code(d).name())
+                    .append("\",\"message\":");
+            appendString(json, diagnostics.message(d));
+            json.append('}');
+        }
+        json.append(']');
+    }
+
+    private static void appendString(StringBuilder json, String text) {
+        json.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '"': json.append("\\\""); break;
+                case '\\': json.append("\\\\"); break;
+                case '\n': json.append("\\n"); break;
+                case '\r': json.append("\\r"); break;
+                case '\t': json.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -1,10 +1,14 @@
 module com.prismx {
     requires javafx.controls;
     requires javafx.fxml;
+    requires java.management;
+    requires jdk.management;
+    requires jdk.jfr;
 
 
     opens com.prismx to javafx.fxml;
     exports com.prismx;
     exports com.prismx.controller;
     opens com.prismx.controller to javafx.fxml;
+    exports com.prismx.model to java.management;
 }
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.prismx.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// What the phase tests share: sources written to a temp directory, diagnostics as short strings
+// and a token-for-token comparison of two results.
+final class analysisFixtures {
+    private analysisFixtures() {}
+
+    // text as the file source.txt in directory
+    static sourceFile source(Path directory, String text) throws IOException {
+        Path file = directory.resolve("source.txt");
+        Files.writeString(file, text);
+        return new sourceFile(file.toFile());
+    }
+
+    // lines as the file source.txt in directory, each ended by a line break
+    static sourceFile source(Path directory, List<String> lines) throws IOException {
+        Path file = directory.resolve("source.txt");
+        Files.write(file, lines);
+        return new sourceFile(file.toFile());
+    }
+
+    static tokenStream lex(Path directory, String text) throws IOException {
+        lexicalAction lexer = new lexicalAction(source(directory, text));
+        lexer.lexicalAnalysis();
+        return lexer.getTokenStream();
+    }
+
+    // "line:column CODE", in report order
+    static List<String> describe(diagnosticSink diagnostics) {
+        List<String> described = new ArrayList<>();
+        for (int i = 0; i < diagnostics.size(); i++) {
+            described.add(diagnostics.line(i) + ":" + diagnostics.column(i) + " " + diagnostics.code(i).name());
+        }
+        return described;
+    }
+
+    static void assertSameResult(analysisResult expected, analysisResult actual) {
+        tokenStream expectedTokens = expected.getTokens();
+        tokenStream actualTokens = actual.getTokens();
+        assertEquals(expectedTokens.lineCount(), actualTokens.lineCount());
+        for (int line = 0; line < expectedTokens.lineCount(); line++) {
+            assertEquals(expectedTokens.lineNumber(line), actualTokens.lineNumber(line));
+            assertEquals(expectedTokens.firstToken(line), actualTokens.firstToken(line));
+            assertEquals(expectedTokens.endToken(line), actualTokens.endToken(line));
+        }
+        assertEquals(expectedTokens.tokenCount(), actualTokens.tokenCount());
+        for (int t = 0; t < expectedTokens.tokenCount(); t++) {
+            assertEquals(expectedTokens.kind(t), actualTokens.kind(t));
+            assertEquals(expectedTokens.line(t), actualTokens.line(t));
+            assertEquals(expectedTokens.lexeme(t), actualTokens.lexeme(t));
+        }
+        assertSameDiagnostics(expected.getSyntaxDiagnostics(), actual.getSyntaxDiagnostics());
+        assertSameDiagnostics(expected.getSemanticDiagnostics(), actual.getSemanticDiagnostics());
+    }
+
+    private static void assertSameDiagnostics(diagnosticSink expected, diagnosticSink actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.line(i), actual.line(i));
+            assertEquals(expected.column(i), actual.column(i));
+            assertEquals(expected.phase(i), actual.phase(i));
+            assertEquals(expected.code(i), actual.code(i));
+            assertEquals(expected.message(i), actual.message(i));
+        }
+    }
+}
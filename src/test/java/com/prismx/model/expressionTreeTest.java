@@ -0,0 +1,97 @@
+package com.prismx.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static com.prismx.model.analysisFixtures.describe;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Expressions right of '=': precedence, constant folding into the declared type, and the places
+// where the checker deliberately reports what Java would wrap, fold or accept.
+class expressionTreeTest {
+    @Test
+    void parsesByPrecedenceLeftToRight() {
+        tokenStream tokens = lexicalAction.lexLine("1 + 2 * (3 - x) % 4 - -y");
+        expressionTree tree = new expressionTree();
+        int root = tree.parse(tokens, 0, tokens.tokenCount());
+        assertEquals(tokens.tokenCount(), tree.end());
+        // ((1 + ((2 * (3 - x)) % 4)) - (-y))
+        assertEquals(expressionTree.BINARY, tree.kind(root));
+        assertEquals("1 + 2 * (3 - x) % 4", expressionTree.text(tokens, tree.first(tree.left(root)), tree.end(tree.left(root))));
+        assertEquals(expressionTree.UNARY, tree.kind(tree.right(root)));
+        int remainder = tree.right(tree.left(root));
+        assertEquals("2 * (3 - x) % 4", expressionTree.text(tokens, tree.first(remainder), tree.end(remainder)));
+        assertEquals("(3 - x)", expressionTree.text(tokens, tree.first(tree.right(tree.left(remainder))),
+                tree.end(tree.right(tree.left(remainder)))));
+    }
+
+    @Test
+    void foldsConstantsIntoTheDeclaredType() {
+        assertEquals(List.of(), check("int a = 2 * (3 + 4) - 10 / 3 % 2;"));
+        assertEquals(List.of(), check("byte b = 100 + 27;"));
+        assertEquals(List.of("1:4 BYTE_OUT_OF_RANGE"), check("byte b = 100 + 28;"));
+        assertEquals(List.of(), check("short s = 300 * 100;"));
+        assertEquals(List.of(), check("long a = 2147483647L + 1;"));
+        assertEquals(List.of(), check("String s = 1 + \"a\";"));
+        assertEquals(List.of("1:4 TYPE_MISMATCH"), check("int i = 1 / 2.0;"));
+        assertEquals(List.of("1:4 TYPE_MISMATCH"), check("int i = 5 * 4L;"));
+        assertEquals(List.of("1:5 BAD_OPERAND_TYPES"), check("int a = \"a\" * 2;"));
+        assertEquals(List.of("1:4 BAD_OPERAND_TYPE"), check("int a = -\"a\";"));
+    }
+
+    @Test
+    void reportsOverflowInsteadOfWrapping() {
+        assertEquals(List.of("1:5 INT_OUT_OF_RANGE"), check("int a = 2147483647 + 1;"));
+        // int arithmetic overflows before the widening to long, as in Java
+        assertEquals(List.of("1:5 INT_OUT_OF_RANGE"), check("long a = 2147483647 + 1;"));
+        assertEquals(List.of("1:5 LONG_OUT_OF_RANGE"), check("long a = 9223372036854775807L + 1;"));
+        assertEquals(List.of("1:4 INT_OUT_OF_RANGE"), check("int a = -(-2147483647 - 1);"));
+        assertEquals(List.of("1:5 DIVISION_BY_ZERO"), check("int a = 7 / (3 - 3);"));
+        assertEquals(List.of("1:5 DIVISION_BY_ZERO"), check("int a = 7 % 0;"));
+    }
+
+    @Test
+    void keepsTheMinimumIntAsOneLiteral() {
+        assertEquals(List.of(), check("int a = -2147483648;"));
+        // unlike Java, a sign split off by a space is an operator applied to 2147483648, which is out of range
+        assertEquals(List.of("1:5 INT_OUT_OF_RANGE"), check("int a = - 2147483648;"));
+    }
+
+    @Test
+    void doesNotFoldCharacters() {
+        assertEquals(List.of(), check("int c = 'a' + 1;"));
+        // unlike Java, 'a' + 1 is not a constant, so it cannot narrow to byte
+        assertEquals(List.of("1:4 TYPE_MISMATCH"), check("byte b = 'a' + 1;"));
+    }
+
+    @Test
+    void capsNestingDepth() {
+        int limit = expressionTree.MAX_DEPTH - 1;
+        assertEquals(List.of(), check("int a = " + "(".repeat(limit) + "1" + ")".repeat(limit) + ";"));
+        // reported at the first token past the limit, however much deeper the nesting goes
+        assertEquals(List.of("1:260 EXPRESSION_TOO_DEEP"), check("int a = " + "(".repeat(limit + 1) + "1" + ")".repeat(limit + 1) + ";"));
+        assertEquals(List.of("1:260 EXPRESSION_TOO_DEEP"), check("int a = " + "(".repeat(300) + "1" + ")".repeat(300) + ";"));
+        assertEquals(List.of(), check("int a = " + "- ".repeat(limit) + "1;"));
+        assertEquals(List.of("1:259 EXPRESSION_TOO_DEEP"), check("int a = " + "- ".repeat(limit + 1) + "1;"));
+        // a left-associative chain stays shallow however long it is
+        assertEquals(List.of(), check("int a = " + "1 + ".repeat(5_000) + "1;"));
+    }
+
+    @Test
+    void reportsMalformedExpressionsInTheSyntaxPhase() {
+        assertEquals(List.of("1:8 EXPECTED_CLOSE_PAREN"), check("int a = (1 + 2;"));
+        assertEquals(List.of("1:6 UNEXPECTED_DELIMITER"), check("int a = 1 + ;"));
+    }
+
+    // "line:column CODE" from the syntax phase, or from the semantic phase when syntax is clean
+    private static List<String> check(String line) {
+        tokenStream tokens = lexicalAction.lexLine(line);
+        syntaxAction syntax = new syntaxAction(tokens);
+        syntax.analyzeSyntax();
+        if (!syntax.getDiagnostics().isEmpty()) return describe(syntax.getDiagnostics());
+        semanticsAction semantics = new semanticsAction(tokens);
+        semantics.analyzeSemantics();
+        return describe(semantics.getDiagnostics());
+    }
+}
@@ -0,0 +1,193 @@
+package com.prismx.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.prismx.model.analysisFixtures.assertSameResult;
+import static com.prismx.model.analysisFixtures.source;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// After any sequence of edits, the incremental results must be exactly what the three phases
+// report when run from scratch over the edited text.
+class incrementalAnalysisTest {
+    // declarations, redeclarations, type and range errors, expressions, braces (which move the lines
+    // after them between blocks), invalid tokens and blank lines, so edits keep adding and removing
+    // what later lines see
+    private static final String[] STATEMENTS = {
+            "int x = 5;", "x = 7;", "y = 3;", "int y;", "long y = 3L;", "String x = \"s\";", "byte b = 300;", "b = 1;",
+            "int b;", "short x;", "x = 40000;", "int = 5;", "@@", "  ", "", "int x", "x = 1.5;", "double x = 2;",
+            "y = \"q\";", "{", "}", "{ }", "} x", "int x = 1; {", "x = y + 1;", "int z = x * (y - 2);", "y = x / 0;",
+            "byte b = x + 1;", "long y = x * 3L;", "int q = -x;", "z = q % (b + y);", "x = 1 + ;",
+            "String s = x + \"a\";", "b = 100 + 27;", "b = 100 + 28;"
+    };
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void randomEditsMatchAFullRun() throws IOException {
+        Random random = new Random(7);
+        for (int document = 0; document < 300; document++) {
+            List<String> text = new ArrayList<>();
+            for (int i = random.nextInt(30); i > 0; i--) text.add(statement(random));
+            incrementalAnalysis incremental = new incrementalAnalysis(text);
+            assertMatchesFullRun(incremental, text);
+
+            for (int edit = 0; edit < 20; edit++) {
+                int kind = random.nextInt(4);
+                if (kind == 0 && !text.isEmpty()) {
+                    int line = random.nextInt(text.size());
+                    String statement = statement(random);
+                    text.set(line, statement);
+                    incremental.setLine(line + 1, statement);
+                } else if (kind == 1) {
+                    int line = random.nextInt(text.size() + 1);
+                    List<String> added = new ArrayList<>();
+                    for (int i = random.nextInt(3); i >= 0; i--) added.add(statement(random));
+                    text.addAll(line, added);
+                    incremental.replaceLines(line + 1, 0, added);
+                } else if (kind == 2 && !text.isEmpty()) {
+                    int line = random.nextInt(text.size());
+                    int count = Math.min(text.size() - line, 1 + random.nextInt(3));
+                    text.subList(line, line + count).clear();
+                    incremental.replaceLines(line + 1, count, List.of());
+                } else {
+                    List<String> edited = new ArrayList<>(text);
+                    if (!edited.isEmpty()) edited.set(random.nextInt(edited.size()), statement(random));
+                    edited.add(random.nextInt(edited.size() + 1), statement(random));
+                    text = edited;
+                    incremental.update(edited);
+                }
+                assertMatchesFullRun(incremental, text);
+            }
+        }
+    }
+
+    @Test
+    void removingADeclarationReachesLaterLines() throws IOException {
+        List<String> text = new ArrayList<>(List.of("int x = 1;", "int y = 2;", "y = x + 1;", "x = 3;"));
+        incrementalAnalysis incremental = new incrementalAnalysis(text);
+        assertNull(incremental.syntaxError(3));
+
+        text.set(0, "int w = 1;");
+        incremental.setLine(1, "int w = 1;");
+        assertMatchesFullRun(incremental, text);
+        assertTrue(incremental.semanticError(3).contains("'x'"), incremental.semanticError(3));
+        assertTrue(incremental.syntaxError(4).contains("'x'"), incremental.syntaxError(4));
+
+        text.set(0, "int x = 1;");
+        incremental.setLine(1, "int x = 1;");
+        assertMatchesFullRun(incremental, text);
+        assertEquals(0, incremental.syntaxErrorCount() + incremental.semanticErrorCount());
+    }
+
+    // Nested blocks, redeclarations in sibling and inner blocks, and unbalanced braces.
+    @Test
+    void randomEditsInBlocksMatchAFullRun() throws IOException {
+        String[] statements = {"{", "}", "{", "}", "int x = 1;", "int y = x;", "x = 2;", "y = x + 1;", "long x;", "int z = y;",
+                "z = 3;", "} {", "{ }", "} x", "", "@"};
+        Random random = new Random(8);
+        for (int document = 0; document < 300; document++) {
+            List<String> text = new ArrayList<>();
+            for (int i = random.nextInt(40); i > 0; i--) text.add(statements[random.nextInt(statements.length)]);
+            incrementalAnalysis incremental = new incrementalAnalysis(text);
+            for (int edit = 0; edit < 20; edit++) {
+                int line = random.nextInt(text.size() + 1);
+                int count = Math.min(text.size() - line, random.nextInt(3));
+                List<String> added = new ArrayList<>();
+                for (int i = random.nextInt(3); i > 0; i--) added.add(statements[random.nextInt(statements.length)]);
+                text.subList(line, line + count).clear();
+                text.addAll(line, added);
+                incremental.replaceLines(line + 1, count, added);
+                assertMatchesFullRun(incremental, text);
+            }
+        }
+    }
+
+    // A file with blocks stays incremental: an edit inside a block re-checks the lines that can see
+    // what it changed, and braces re-check only the lines they move into other blocks.
+    @Test
+    void editsInAFileWithBlocksStayLocal() throws IOException {
+        List<String> text = new ArrayList<>();
+        for (int block = 0; block < 500; block++) {
+            text.add("int v" + block + " = " + block + ";");
+            text.add("{");
+            text.add("int w = v" + block + ";");
+            text.add("w = w + 1;");
+            text.add("}");
+        }
+        incrementalAnalysis incremental = new incrementalAnalysis(text);
+        assertEquals(2_500, incremental.checkedLines());
+
+        // w keeps its type, so the line after it needs no look; retyped, only its own block's use does
+        edit(incremental, text, 1_003, 1, List.of("int w = 7;"));
+        assertEquals(1, incremental.checkedLines());
+        edit(incremental, text, 1_003, 1, List.of("long w = 7;"));
+        assertEquals(2, incremental.checkedLines());
+
+        // whole blocks in and out: nothing after them changes block
+        edit(incremental, text, 1_006, 0, List.of("{", "int w = 1;", "}"));
+        assertEquals(3, incremental.checkedLines());
+        edit(incremental, text, 1_006, 3, List.of());
+        assertEquals(0, incremental.checkedLines());
+        // splitting a block moves its last two lines into a new one, where w is not declared
+        edit(incremental, text, 1_009, 0, List.of("} {"));
+        assertEquals(3, incremental.checkedLines());
+        assertEquals(1, incremental.syntaxErrorCount());
+        edit(incremental, text, 1_009, 1, List.of());
+        assertEquals(2, incremental.checkedLines());
+
+        // a lost '}' moves the rest of the file into the open block, and back once it returns
+        edit(incremental, text, 1_005, 1, List.of());
+        assertTrue(incremental.syntaxErrorCount() > 0);
+        edit(incremental, text, 1_005, 0, List.of("}"));
+        assertEquals(0, incremental.syntaxErrorCount() + incremental.semanticErrorCount());
+    }
+
+    private void edit(incrementalAnalysis incremental, List<String> text, int firstLine, int removeCount, List<String> newLines)
+            throws IOException {
+        text.subList(firstLine - 1, firstLine - 1 + removeCount).clear();
+        text.addAll(firstLine - 1, newLines);
+        incremental.replaceLines(firstLine, removeCount, newLines);
+        assertMatchesFullRun(incremental, text);
+    }
+
+    private static String statement(Random random) {
+        return STATEMENTS[random.nextInt(STATEMENTS.length)];
+    }
+
+    private void assertMatchesFullRun(incrementalAnalysis incremental, List<String> text) throws IOException {
+        sourceFile source = source(directory, text);
+        lexicalAction lexer = new lexicalAction(source);
+        lexer.lexicalAnalysis();
+        syntaxAction syntax = new syntaxAction(lexer.getTokenStream());
+        syntax.analyzeSyntax();
+        semanticsAction semantics = new semanticsAction(lexer.getTokenStream());
+        semantics.analyzeSemantics();
+
+        String context = String.join("\n", text);
+        assertEquals(lexer.lexicalSuccessStatus(), incremental.lexicalSuccessStatus(), context);
+        assertEquals(dump(syntax.getErrors()), dump(incremental.getSyntaxErrors()), context);
+        assertEquals(dump(semantics.getErrors()), dump(incremental.getSemanticErrors()), context);
+        assertEquals(syntax.getErrors().size(), incremental.syntaxErrorCount(), context);
+        assertEquals(semantics.getErrors().size(), incremental.semanticErrorCount(), context);
+        // what watch mode reports in place of a full run
+        assertSameResult(analysisResult.analyze(source, tracer.NONE, false), incremental.result());
+    }
+
+    private static String dump(lineMap<String> errors) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < errors.size(); i++) {
+            text.append(errors.lineAt(i)).append(": ").append(errors.valueAt(i)).append('\n');
+        }
+        return text.toString();
+    }
+}
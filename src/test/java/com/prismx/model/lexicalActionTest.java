@@ -0,0 +1,79 @@
+package com.prismx.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// tokenKind() is a hand-coded DFA for what the tokenizer used to decide with String.matches();
+// the regex chain is kept here as the reference it must agree with.
+class lexicalActionTest {
+    // every character class the patterns tell apart, plus the regex line terminators '.' rejects
+    // and a surrogate pair, which '[^']' matches as one character
+    private static final char[] ALPHABET = {
+            'a', 'b', 'e', 'E', 'f', 'L', 'S', 'i', 'n', 't', '_', '0', '7', '.', '+', '-', '*', '/', '%',
+            '"', '\'', '=', ';', '{', '}', '(', ')', ' ', '\n', ' ', '\uD83D', '\uDE00'
+    };
+
+    private static byte reference(String lexeme) {
+        if (lexeme.matches("byte|short|int|long|double|float|char|String|boolean")) return tokenStream.DATA_TYPE;
+        if (lexeme.equals("=")) return tokenStream.ASSIGNMENT_OPERATOR;
+        if (lexeme.equals(";")) return tokenStream.DELIMITER;
+        if (lexeme.equals("{")) return tokenStream.OPEN_BRACE;
+        if (lexeme.equals("}")) return tokenStream.CLOSE_BRACE;
+        if (lexeme.equals("(")) return tokenStream.OPEN_PAREN;
+        if (lexeme.equals(")")) return tokenStream.CLOSE_PAREN;
+        if (lexeme.matches("[-+*/%]")) return tokenStream.OPERATOR;
+        if (lexeme.matches("\".*\"|'[^']'|true|false|[-+]?\\d*\\.?\\d+([eE][-+]?\\d+)?[fFdDlL]?")) return tokenStream.VALUE;
+        if (lexeme.matches("[a-zA-Z_][a-zA-Z0-9_]*")) return tokenStream.IDENTIFIER;
+        return tokenStream.ERROR;
+    }
+
+    private static void check(String lexeme) {
+        assertEquals(tokenStream.kindName(reference(lexeme)), lexicalAction.tokenizer(lexeme), () -> "lexeme: " + lexeme);
+    }
+
+    @Test
+    void agreesOnEveryShortString() {
+        char[] text = new char[4];
+        for (int length = 1; length <= text.length; length++) {
+            int[] digits = new int[length];
+            while (true) {
+                for (int i = 0; i < length; i++) text[i] = ALPHABET[digits[i]];
+                check(new String(text, 0, length));
+                int i = length - 1;
+                while (i >= 0 && ++digits[i] == ALPHABET.length) digits[i--] = 0;
+                if (i < 0) break;
+            }
+        }
+    }
+
+    @Test
+    void agreesOnRandomLexemes() {
+        Random random = new Random(1);
+        String[] words = {"int", "String", "boolean", "true", "false", "1e", "0.5", "L", "f", "x_1"};
+        StringBuilder lexeme = new StringBuilder();
+        for (int n = 0; n < 200_000; n++) {
+            lexeme.setLength(0);
+            int length = 1 + random.nextInt(12);
+            while (lexeme.length() < length) {
+                if (random.nextInt(4) == 0) {
+                    lexeme.append(words[random.nextInt(words.length)]);
+                } else {
+                    lexeme.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+                }
+            }
+            check(lexeme.toString());
+        }
+    }
+
+    @Test
+    void classifiesInsideLongerText() {
+        String line = "double d = -1.5e+3f;";
+        assertEquals(tokenStream.DATA_TYPE, lexicalAction.tokenKind(line, 0, 6));
+        assertEquals(tokenStream.IDENTIFIER, lexicalAction.tokenKind(line, 7, 8));
+        assertEquals(tokenStream.VALUE, lexicalAction.tokenKind(line, 11, 19));
+        assertEquals(tokenStream.ERROR, lexicalAction.tokenKind(line, 11, 11));
+    }
+}
@@ -0,0 +1,129 @@
+package com.prismx.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTimeout;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// lineMap stands in for the Map<Integer, String> the phases used to keep their errors in; a
+// TreeMap is the reference, since line order is what the old HashMap only got by accident.
+class lineMapTest {
+    @Test
+    void matchesTreeMapOnSparseLines() {
+        Random random = new Random(6);
+        lineMap<String> lines = new lineMap<>();
+        TreeMap<Integer, String> reference = new TreeMap<>();
+        int line = 0;
+        for (int i = 0; i < 50_000; i++) {
+            int key;
+            if (random.nextInt(10) > 0 && line < Integer.MAX_VALUE - 100_000) {
+                // mostly ascending, with gaps of up to 80K lines, like the phases report
+                key = line += 1 + random.nextInt(80_000);
+            } else {
+                // out of order or overwriting, anywhere up to Integer.MAX_VALUE
+                key = 1 + random.nextInt(Integer.MAX_VALUE);
+            }
+            lines.put(key, "e" + i);
+            reference.put(key, "e" + i);
+        }
+        lines.put(Integer.MAX_VALUE, "last");
+        reference.put(Integer.MAX_VALUE, "last");
+
+        assertEquals(reference.size(), lines.size());
+        int index = 0;
+        for (Map.Entry<Integer, String> entry : reference.entrySet()) {
+            assertEquals(entry.getKey(), lines.lineAt(index));
+            assertEquals(entry.getValue(), lines.valueAt(index));
+            assertEquals(entry.getValue(), lines.get(entry.getKey()));
+            assertTrue(lines.containsLine(entry.getKey()));
+            index++;
+        }
+        for (int i = 0; i < 10_000; i++) {
+            int key = random.nextInt(Integer.MAX_VALUE);
+            assertEquals(reference.get(key), lines.get(key));
+            assertEquals(reference.containsKey(key), lines.containsLine(key));
+        }
+    }
+
+    @Test
+    void clearDropsEverything() {
+        lineMap<String> lines = new lineMap<>();
+        lines.put(3, "a");
+        lines.put(Integer.MAX_VALUE, "b");
+        lines.clear();
+        assertTrue(lines.isEmpty());
+        assertNull(lines.get(3));
+        assertFalse(lines.containsLine(Integer.MAX_VALUE));
+    }
+
+    // The same statements analyzed under consecutive line numbers and under line numbers spread
+    // up to Integer.MAX_VALUE give the same diagnostics, line for line. With a HashMap the sparse
+    // lines came back in hash order, so uses were checked before their declarations.
+    @Test
+    void sparseLineNumbersAnalyzeLikeDenseOnes() {
+        List<String> statements = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            statements.add("int v" + i + " = " + i + ";");
+            statements.add("v" + i + " = v" + (i / 2) + " + 1;");
+            if (i % 100 == 0) statements.add("w" + i + " = 1;");
+            if (i % 150 == 0) statements.add("int v" + i + " = 2");
+        }
+        int stride = Integer.MAX_VALUE / statements.size();
+        int[] dense = new int[statements.size()];
+        int[] sparse = new int[statements.size()];
+        for (int i = 0; i < dense.length; i++) {
+            dense[i] = i + 1;
+            sparse[i] = Integer.MAX_VALUE - (statements.size() - 1 - i) * stride;
+        }
+
+        List<String> denseErrors = analyze(statements, dense);
+        List<String> sparseErrors = assertTimeout(Duration.ofSeconds(10), () -> analyze(statements, sparse));
+        assertEquals(denseErrors.size(), sparseErrors.size());
+        for (int i = 0; i < denseErrors.size(); i++) {
+            String[] d = denseErrors.get(i).split(":", 2);
+            String[] s = sparseErrors.get(i).split(":", 2);
+            assertEquals(sparse[Integer.parseInt(d[0]) - 1], Integer.parseInt(s[0]));
+            assertEquals(d[1], s[1]);
+        }
+        // only the undeclared w's and the redeclared v's; every v is declared before it is read
+        assertTrue(denseErrors.stream().noneMatch(e -> e.contains("'v") && e.contains("not")), () -> String.valueOf(denseErrors));
+        assertEquals(20, denseErrors.stream().filter(e -> e.contains("semantic:Variable 'w")).count());
+    }
+
+    // "line:phase:message" for every syntax and semantic error, in line order
+    private static List<String> analyze(List<String> statements, int[] lineNumbers) {
+        tokenStream tokens = new tokenStream();
+        for (int i = 0; i < statements.size(); i++) {
+            for (String lexeme : lexicalAction.lexemeSplit(statements.get(i))) {
+                tokens.addToken(lexicalAction.tokenKind(lexeme, 0, lexeme.length()), lineNumbers[i], lexeme);
+            }
+            tokens.endLine(lineNumbers[i]);
+        }
+        syntaxAction syntax = new syntaxAction(tokens);
+        syntax.analyzeSyntax();
+        semanticsAction semantics = new semanticsAction(tokens);
+        semantics.analyzeSemantics();
+
+        List<String> errors = new ArrayList<>();
+        lineMap<String> syntaxErrors = syntax.getErrors();
+        for (int i = 0; i < syntaxErrors.size(); i++) {
+            errors.add(syntaxErrors.lineAt(i) + ":syntax:" + syntaxErrors.valueAt(i));
+        }
+        lineMap<String> semanticErrors = semantics.getErrors();
+        for (int i = 0; i < semanticErrors.size(); i++) {
+            errors.add(semanticErrors.lineAt(i) + ":semantic:" + semanticErrors.valueAt(i));
+        }
+        errors.sort((a, b) -> Integer.compare(Integer.parseInt(a.split(":")[0]), Integer.parseInt(b.split(":")[0])));
+        return errors;
+    }
+}
@@ -0,0 +1,121 @@
+package com.prismx.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static com.prismx.model.analysisFixtures.assertSameResult;
+import static com.prismx.model.analysisFixtures.source;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// A result written with write() comes back from read() token for token and diagnostic for
+// diagnostic; anything cut short or damaged is an IOException, never a half-read result.
+class resultFormatTest {
+    // errors from every phase, messages with up to three arguments, non-ASCII lexemes and blank lines
+    private static final String[] STATEMENTS = {
+            "int x = 5;", "byte b = 300;", "x = \"s\";", "String s = \"héllo €\";", "long y = x * 3L;",
+            "short q = 40000;", "int x;", "z = 1;", "int a = 7 / (3 - 3);", "int w = @;", "double d = 1.5e3;",
+            "char c = 'q';", "b = 1 + ;", "{", "}", "", "  ", "int ü = 1;", "boolean t = true; int u = t;"
+    };
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsALargeFile() throws IOException {
+        Random random = new Random(20);
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; line < 50_000; line++) {
+            text.append(STATEMENTS[random.nextInt(STATEMENTS.length)]).append('\n');
+        }
+        sourceFile source = source(directory, text.toString());
+        analysisResult result = analysisResult.analyze(source, tracer.NONE, true);
+        assertTrue(result.getSemanticDiagnostics().size() > 1_000);
+        assertTrue(hasArguments(result.getSemanticDiagnostics(), 3));
+
+        Path saved = directory.resolve("source.prr");
+        resultFormat.write(result, source, saved);
+        assertSameResult(result, resultFormat.read(saved));
+        assertSameResult(result, resultFormat.read(saved, source));
+
+        // the keyed read misses for other content, and throws for nothing
+        assertNull(resultFormat.read(saved, source(directory, text + "int more = 1;\n")));
+    }
+
+    @Test
+    void roundTripsAnEmptyFile() throws IOException {
+        sourceFile source = source(directory, "");
+        analysisResult result = analysisResult.analyze(source, tracer.NONE, true);
+        Path saved = directory.resolve("empty.prr");
+        resultFormat.write(result, source, saved);
+        assertSameResult(result, resultFormat.read(saved));
+    }
+
+    @Test
+    void throwsOnEveryTruncation() throws IOException {
+        byte[] data = encode("int x = 5;\nbyte b = 300;\nx = \"s\";\n\nint w = @; y = 2;\n");
+        for (int length = 0; length < data.length; length++) {
+            Path saved = save(Arrays.copyOf(data, length));
+            assertThrows(IOException.class, () -> resultFormat.read(saved), "length " + length);
+        }
+        assertNotNull(resultFormat.read(save(data)));
+    }
+
+    @Test
+    void throwsOnForeignOrDamagedData() throws IOException {
+        byte[] data = encode("int x = 5;\nx = \"s\";\n");
+        assertThrows(IOException.class, () -> resultFormat.read(save("not a result".getBytes())));
+
+        byte[] version = data.clone();
+        version[5]++;
+        assertThrows(IOException.class, () -> resultFormat.read(save(version)));
+        assertNull(resultFormat.decode(ByteBuffer.wrap(version), 0, 0, false));
+
+        // a string count far past the end of the data
+        byte[] count = data.clone();
+        count[26] = (byte) 0xff;
+        count[27] = (byte) 0xff;
+        count[28] = (byte) 0x7f;
+        assertThrows(IOException.class, () -> resultFormat.read(save(count)));
+
+        // any single damaged byte either still decodes or throws IOException, nothing else
+        Random random = new Random(21);
+        for (int i = 0; i < 2_000; i++) {
+            byte[] damaged = data.clone();
+            damaged[random.nextInt(damaged.length)] ^= (byte) (1 + random.nextInt(255));
+            Path saved = save(damaged);
+            try {
+                resultFormat.read(saved);
+            } catch (IOException e) {
+                // expected for most bytes
+            }
+        }
+    }
+
+    private byte[] encode(String text) throws IOException {
+        sourceFile source = source(directory, text);
+        return resultFormat.encode(analysisResult.analyze(source, tracer.NONE, true), source.contentHash(), source.byteSize());
+    }
+
+    private Path save(byte[] data) throws IOException {
+        Path saved = directory.resolve("saved.prr");
+        Files.write(saved, data);
+        return saved;
+    }
+
+    private static boolean hasArguments(diagnosticSink diagnostics, int count) {
+        for (int i = 0; i < diagnostics.size(); i++) {
+            if (diagnostics.get(i).arguments().length == count) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,148 @@
+package com.prismx.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.prismx.model.analysisFixtures.assertSameResult;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Watch mode against a real directory: every listener call is queued as "call:file:variable", so
+// a test sees exactly which calls came, in order. The debounce is long next to the gaps between
+// the writes of one burst, and the waits for calls are long next to the debounce.
+class sourceWatcherTest {
+    private static final long DEBOUNCE_MILLIS = 300;
+
+    @TempDir
+    Path directory;
+
+    private final BlockingQueue<String> calls = new LinkedBlockingQueue<>();
+    private volatile analysisResult lastResult;
+
+    private final sourceWatcher.listener listener = new sourceWatcher.listener() {
+        @Override
+        public void analyzed(sourceFile source, analysisResult result, long nanos) {
+            // the variable declared on the first line tells the versions of a file apart
+            lastResult = result;
+            calls.add("analyzed:" + source.getFile().getName() + ":" + result.getTokens().lexeme(1));
+        }
+
+        @Override
+        public void removed(File file) {
+            calls.add("removed:" + file.getName());
+        }
+
+        @Override
+        public void failed(File file, Exception e) {
+            calls.add("failed:" + file.getName() + ":" + e);
+        }
+    };
+
+    @Test
+    void aBurstOfWritesIsAnalyzedOnce() throws Exception {
+        Path file = directory.resolve("a.txt");
+        Files.writeString(file, "int v0 = 0;\n");
+        try (sourceWatcher watcher = watch()) {
+            assertEquals(1, watcher.start());
+            assertEquals("analyzed:a.txt:v0", next());
+
+            for (int i = 1; i <= 5; i++) {
+                Files.writeString(file, "int v" + i + " = " + i + ";\n");
+                Thread.sleep(10);
+            }
+            assertEquals("analyzed:a.txt:v5", next());
+            assertNull(quiet());
+        }
+    }
+
+    @Test
+    void unchangedContentIsNotReported() throws Exception {
+        Path file = directory.resolve("a.txt");
+        Files.writeString(file, "int v0 = 0;\n");
+        try (sourceWatcher watcher = watch()) {
+            watcher.start();
+            assertEquals("analyzed:a.txt:v0", next());
+
+            // a save without changes and a touch: events arrive and the runs hash the file, but report nothing
+            Files.writeString(file, "int v0 = 0;\n");
+            Thread.sleep(DEBOUNCE_MILLIS * 3);
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+            Thread.sleep(DEBOUNCE_MILLIS * 3);
+            assertNull(calls.poll());
+
+            // the next real change is the next call
+            Files.writeString(file, "int v1 = 1;\n");
+            assertEquals("analyzed:a.txt:v1", next());
+            assertNull(quiet());
+        }
+    }
+
+    @Test
+    void followsCreatedAndDeletedFiles() throws Exception {
+        try (sourceWatcher watcher = watch()) {
+            assertEquals(0, watcher.start());
+
+            Path file = directory.resolve("sub").resolve("b.java");
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, "int w = 1;\n");
+            // not a source file, so not watched
+            Files.writeString(directory.resolve("notes.md"), "int n = 1;\n");
+            assertEquals("analyzed:b.java:w", next());
+
+            Files.delete(file);
+            assertEquals("removed:b.java", next());
+            assertNull(quiet());
+        }
+    }
+
+    @Test
+    void savesReportWhatAFullRunWould() throws Exception {
+        Path file = directory.resolve("a.txt");
+        Files.writeString(file, "int v0 = 0;\n{\nint x = 1;\n}\nx = 2;\n");
+        try (sourceWatcher watcher = watch()) {
+            watcher.start();
+            assertEquals("analyzed:a.txt:v0", next());
+            assertSameResult(analysisResult.analyze(new sourceFile(file.toFile()), tracer.NONE, false), lastResult);
+
+            // each save goes through the file's incremental engine: a redeclaration, a lost '}', then a clean file
+            String[] saves = {
+                    "int v1 = 0;\n{\nint x = 1;\nint x = 2;\n}\nx = 2;\n",
+                    "int v2 = 0;\n{\nint x = 1;\n\nx = 2;\n",
+                    "int v3 = 0;\n{\nint x = 1;\n}\nint x = 2;\n"
+            };
+            for (int i = 0; i < saves.length; i++) {
+                Files.writeString(file, saves[i]);
+                assertEquals("analyzed:a.txt:v" + (i + 1), next());
+                assertSameResult(analysisResult.analyze(new sourceFile(file.toFile()), tracer.NONE, false), lastResult);
+            }
+            assertTrue(lastResult.getSyntaxDiagnostics().isEmpty() && lastResult.getSemanticDiagnostics().isEmpty());
+        }
+    }
+
+    private sourceWatcher watch() throws IOException {
+        return new sourceWatcher(List.of(directory), tracer.NONE, false, 2, DEBOUNCE_MILLIS, listener);
+    }
+
+    private String next() throws InterruptedException {
+        String call = calls.poll(10, TimeUnit.SECONDS);
+        assertNotNull(call, "no call within 10 s");
+        return call;
+    }
+
+    // the next call, if one comes within a few debounce intervals
+    private String quiet() throws InterruptedException {
+        return calls.poll(DEBOUNCE_MILLIS * 4, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,79 @@
+package com.prismx.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.prismx.model.analysisFixtures.describe;
+import static com.prismx.model.analysisFixtures.lex;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Recovering mode: each line is cut into statements at ';', a statement with an error is
+// reported and skipped up to its ';', and checking resumes with the next statement.
+class syntaxActionTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void resumesAfterAnInvalidTokenAtTheNextSemicolon() throws IOException {
+        String source = "int a = @; int b = 2; b = x;";
+        assertEquals(List.of("1:4 LEXICAL_ERROR"), syntax(source, true));
+        assertEquals(List.of("1:13 NOT_DECLARED"), semantics(source, true));
+
+        // without recovery the line stops at its first error
+        assertEquals(List.of("1:4 EXPECTED_VALUE"), syntax(source, false));
+        assertEquals(List.of("1:4 TYPE_MISMATCH"), semantics(source, false));
+    }
+
+    @Test
+    void reportsAnErrorInEveryStatementOfALine() throws IOException {
+        String source = "int = 5; y = 1; int z = 1 + ;";
+        assertEquals(List.of("1:2 EXPECTED_VARIABLE_NAME", "1:5 UNDECLARED_VARIABLE", "1:14 UNEXPECTED_DELIMITER"),
+                syntax(source, true));
+        assertEquals(List.of("1:2 EXPECTED_VARIABLE_NAME"), syntax(source, false));
+    }
+
+    @Test
+    void skipsTheRestOfABrokenStatement() throws IOException {
+        // the '2' after '@' is not reported again, and the failed declaration declares nothing
+        String source = "int a = 1 @ 2 ; int b = a;";
+        assertEquals(List.of("1:5 LEXICAL_ERROR"), syntax(source, true));
+        assertEquals(List.of("1:11 NOT_DECLARED"), semantics(source, true));
+    }
+
+    @Test
+    void checksEveryStatementOfACleanLine() throws IOException {
+        assertEquals(List.of(), syntax("int a = 1; int b = 2; a = b;", true));
+        assertEquals(List.of(), semantics("int a = 1; int b = 2; a = b;", true));
+        assertEquals(List.of("1:8 TYPE_MISMATCH"), semantics("int a = 1; a = \"s\"; long c = a;", true));
+    }
+
+    @Test
+    void reportsAMissingSemicolonAfterTheLastStatement() throws IOException {
+        assertEquals(List.of("1:2 EXPECTED_VARIABLE_NAME", "1:0 INCOMPLETE_STATEMENT"), syntax("int = 5; int c = 1; c = 2", true));
+    }
+
+    @Test
+    void keepsGoingOnTheLinesAfterAnError() throws IOException {
+        String source = "int a = 1;\nint b = # ; b = a;\nb = 1 + ;";
+        assertEquals(List.of("2:4 LEXICAL_ERROR", "2:6 UNDECLARED_VARIABLE", "3:1 UNDECLARED_VARIABLE"), syntax(source, true));
+        assertEquals(List.of("2:4 EXPECTED_VALUE", "3:5 UNEXPECTED_DELIMITER"), syntax(source, false));
+    }
+
+    private List<String> syntax(String source, boolean recovering) throws IOException {
+        syntaxAction syntax = new syntaxAction(lex(directory, source + "\n"));
+        syntax.setRecovering(recovering);
+        syntax.analyzeSyntax();
+        return describe(syntax.getDiagnostics());
+    }
+
+    private List<String> semantics(String source, boolean recovering) throws IOException {
+        semanticsAction semantics = new semanticsAction(lex(directory, source + "\n"));
+        semantics.setRecovering(recovering);
+        semantics.analyzeSemantics();
+        return describe(semantics.getDiagnostics());
+    }
+}